@@ -0,0 +1,24 @@
+package com.brinqa.storage;
+
+import java.io.Closeable;
+
+/** Mapping of one long to another, implementations may keep it on disk or in memory. */
+public interface Long2LongMapping extends Closeable {
+
+    void put(Long key, Long value);
+
+    /**
+     * @return the value of the key, null if there's none.
+     */
+    Long get(Long key);
+
+    void remove(Long key);
+
+    int size();
+
+    /** Close the mapping and remove anything it stored. */
+    void delete();
+
+    @Override
+    void close();
+}
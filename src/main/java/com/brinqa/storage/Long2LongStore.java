@@ -2,7 +2,6 @@ package com.brinqa.storage;
 
 import static org.rocksdb.CompressionType.ZSTD_COMPRESSION;
 
-import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
@@ -12,10 +11,12 @@ import org.rocksdb.CompressionOptions;
 import org.rocksdb.Options;
 import org.rocksdb.RocksDB;
 import org.rocksdb.RocksDBException;
+import org.rocksdb.WriteBatch;
+import org.rocksdb.WriteOptions;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-public class Long2LongStore implements Closeable {
+public class Long2LongStore implements Long2LongMapping {
 
     public static final Logger LOG = LoggerFactory.getLogger(Long2LongStore.class);
 
@@ -26,6 +27,26 @@ public class Long2LongStore implements Closeable {
     private final AtomicInteger counter = new AtomicInteger(0);
 
     public Long2LongStore() {
+        this(null);
+    }
+
+    /**
+     * Open a store in the directory provided, any existing content is kept so the mapping can be
+     * reused across runs.
+     *
+     * @param directory storage directory, a temporary directory is used if null.
+     */
+    public Long2LongStore(File directory) {
+        this(directory, -1);
+    }
+
+    /**
+     * Open a store in the directory provided, with the number of entries it's known to hold.
+     *
+     * @param directory storage directory, a temporary directory is used if null.
+     * @param size number of entries in the store, estimated by RocksDB if negative
+     */
+    public Long2LongStore(File directory, int size) {
         this.keyHandler = LongSerializationHandler.INSTANCE;
         this.valueHandler = LongSerializationHandler.INSTANCE;
 
@@ -35,7 +56,7 @@ public class Long2LongStore implements Closeable {
         }
 
         // storage directory for the Long2Long map
-        this.directory = newTempDirectory();
+        this.directory = (null == directory) ? newTempDirectory() : directory;
 
         // build out the database
         try (Options options = new Options()) {
@@ -49,6 +70,18 @@ public class Long2LongStore implements Closeable {
         } catch (RocksDBException e) {
             throw new IllegalStateException(e);
         }
+
+        // counting the entries would read every key of a large store
+        counter.set(size >= 0 ? size : estimateSize());
+    }
+
+    int estimateSize() {
+        try {
+            final long keys = db.get().getLongProperty("rocksdb.estimate-num-keys");
+            return (int) Math.min(Integer.MAX_VALUE, keys);
+        } catch (RocksDBException e) {
+            throw new IllegalStateException(e);
+        }
     }
 
     File newTempDirectory() {
@@ -59,6 +92,7 @@ public class Long2LongStore implements Closeable {
         }
     }
 
+    @Override
     public void put(final Long key, final Long value) {
         assert key != null && value != null;
         final byte[] rawKey = keyHandler.toBytes(key);
@@ -73,6 +107,7 @@ public class Long2LongStore implements Closeable {
         }
     }
 
+    @Override
     public Long get(final Long key) {
         assert key != null;
         try {
@@ -84,6 +119,40 @@ public class Long2LongStore implements Closeable {
         }
     }
 
+    @Override
+    public void remove(final Long key) {
+        assert key != null;
+        final byte[] rawKey = keyHandler.toBytes(key);
+        try {
+            if (null != db.get().get(rawKey)) {
+                counter.decrementAndGet();
+                db.get().delete(rawKey);
+            }
+        } catch (RocksDBException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Write a run of entries in one batch, without the write ahead log.
+     *
+     * @param added number of the keys not already in the store
+     */
+    void putAll(final long[] keys, final long[] values, final int length, final int added) {
+        try (WriteBatch batch = new WriteBatch();
+                WriteOptions options = new WriteOptions()) {
+            options.setDisableWAL(true);
+            for (int i = 0; i < length; i++) {
+                batch.put(keyHandler.toBytes(keys[i]), valueHandler.toBytes(values[i]));
+            }
+            db.get().write(options, batch);
+            counter.addAndGet(added);
+        } catch (RocksDBException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
     public void delete() {
         try {
             close();
@@ -98,6 +167,7 @@ public class Long2LongStore implements Closeable {
         }
     }
 
+    @Override
     public int size() {
         return this.counter.get();
     }
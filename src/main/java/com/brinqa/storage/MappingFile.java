@@ -0,0 +1,327 @@
+package com.brinqa.storage;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32C;
+
+/**
+ * Source to target ID mapping saved as a sorted, memory mapped file, so IDs can be translated
+ * long after the copy and its temporary stores are gone.
+ *
+ * <p>The file is big endian and laid out as
+ *
+ * <pre>
+ *   header     64 bytes: magic, version, entry count, entries per block, first key, last key, CRC
+ *   entries    key and value pairs of 8 bytes each, in increasing key order
+ *   checksums  CRC32C of each block of entries
+ * </pre>
+ *
+ * If the keys cover their whole range a lookup indexes straight into the entries, otherwise it's a
+ * binary search.
+ */
+public class MappingFile implements Closeable {
+
+    static final int MAGIC = 0x4E4D4150; // NMAP
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 64;
+    static final int HEADER_CRC_OFFSET = 40;
+    static final int ENTRY_BYTES = 2 * Long.BYTES;
+    static final int BLOCK_ENTRIES = 4096;
+    // entries of one mapped buffer, 1 GB, a buffer can't go past 2 GB
+    static final int SEGMENT_SHIFT = 26;
+    static final long SEGMENT_MASK = (1L << SEGMENT_SHIFT) - 1;
+
+    /** Value of a key that isn't mapped, target IDs are never negative. */
+    public static final long MISSING = -1L;
+
+    private final File file;
+    private final long count;
+    private final long firstKey;
+    private final long lastKey;
+    private final boolean dense;
+    private final MappedByteBuffer[] segments;
+    private final ByteBuffer checksums;
+
+    MappingFile(File file, ByteBuffer header, FileChannel channel) throws IOException {
+        this.file = file;
+        this.count = header.getLong(8);
+        this.firstKey = header.getLong(24);
+        this.lastKey = header.getLong(32);
+        this.dense = count > 0 && lastKey - firstKey == count - 1;
+
+        final long expected = HEADER_BYTES + count * ENTRY_BYTES + blocks(count) * Integer.BYTES;
+        if (channel.size() != expected) {
+            final var FMT = "Mapping file %s is %d bytes, expected %d";
+            throw new IllegalStateException(String.format(FMT, file, channel.size(), expected));
+        }
+        final int segmentCount = (int) ((count + SEGMENT_MASK) >>> SEGMENT_SHIFT);
+        this.segments = new MappedByteBuffer[segmentCount];
+        for (int s = 0; s < segmentCount; s++) {
+            final long first = (long) s << SEGMENT_SHIFT;
+            final long entries = Math.min(count - first, 1L << SEGMENT_SHIFT);
+            final long position = HEADER_BYTES + first * ENTRY_BYTES;
+            segments[s] =
+                    channel.map(FileChannel.MapMode.READ_ONLY, position, entries * ENTRY_BYTES);
+        }
+        final long position = HEADER_BYTES + count * ENTRY_BYTES;
+        this.checksums =
+                channel.map(
+                        FileChannel.MapMode.READ_ONLY, position, blocks(count) * Integer.BYTES);
+    }
+
+    /** Open the file and check its header, the entries are checked with {@link #verify()}. */
+    public static MappingFile open(File file) {
+        try (final var channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            final var header = ByteBuffer.allocate(HEADER_BYTES);
+            while (header.hasRemaining() && channel.read(header) >= 0) {
+                // read the whole header
+            }
+            if (header.hasRemaining() || header.getInt(0) != MAGIC) {
+                throw new IllegalStateException("Not a mapping file: " + file);
+            }
+            if (header.getInt(4) != VERSION) {
+                final var FMT = "Mapping file %s has version %d, expected %d";
+                throw new IllegalStateException(
+                        String.format(FMT, file, header.getInt(4), VERSION));
+            }
+            final var crc = new CRC32C();
+            crc.update(header.array(), 0, HEADER_CRC_OFFSET);
+            if ((int) crc.getValue() != header.getInt(HEADER_CRC_OFFSET)) {
+                throw new IllegalStateException("Mapping file header is corrupt: " + file);
+            }
+            if (header.getInt(16) != BLOCK_ENTRIES) {
+                throw new IllegalStateException("Unsupported block size in mapping file: " + file);
+            }
+            // the buffers stay valid after the channel is closed
+            return new MappingFile(file, header, channel);
+        } catch (IOException ioe) {
+            throw new IllegalStateException(ioe);
+        }
+    }
+
+    public static Writer writer(File file) {
+        return new Writer(file);
+    }
+
+    static long blocks(long count) {
+        return (count + BLOCK_ENTRIES - 1) / BLOCK_ENTRIES;
+    }
+
+    public long size() {
+        return count;
+    }
+
+    public long firstKey() {
+        return firstKey;
+    }
+
+    public long lastKey() {
+        return lastKey;
+    }
+
+    /** True if every key from the first to the last is mapped, lookups then skip the search. */
+    public boolean isDense() {
+        return dense;
+    }
+
+    long key(long idx) {
+        final var segment = segments[(int) (idx >>> SEGMENT_SHIFT)];
+        return segment.getLong((int) (idx & SEGMENT_MASK) * ENTRY_BYTES);
+    }
+
+    long value(long idx) {
+        final var segment = segments[(int) (idx >>> SEGMENT_SHIFT)];
+        return segment.getLong((int) (idx & SEGMENT_MASK) * ENTRY_BYTES + Long.BYTES);
+    }
+
+    /**
+     * @return the target ID of the key, {@link #MISSING} if it isn't mapped.
+     */
+    public long get(long key) {
+        final long idx = indexOf(key, 0);
+        return idx < 0 ? MISSING : value(idx);
+    }
+
+    /** Entry of the key searching from the entry given, -1 if the key isn't mapped. */
+    long indexOf(long key, long from) {
+        if (count == 0 || key < firstKey || key > lastKey) {
+            return -1;
+        }
+        if (dense) {
+            return key - firstKey;
+        }
+        long lo = from;
+        long hi = count - 1;
+        while (lo <= hi) {
+            final long mid = (lo + hi) >>> 1;
+            final long k = key(mid);
+            if (k < key) {
+                lo = mid + 1;
+            } else if (k > key) {
+                hi = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Translate the IDs in place, an ID that isn't mapped becomes {@link #MISSING}. Runs of
+     * increasing IDs only search past the last match, so sorted input is cheapest.
+     *
+     * @return number of IDs that weren't mapped
+     */
+    public int remap(long[] ids, int length) {
+        int missing = 0;
+        long previous = Long.MIN_VALUE;
+        long from = 0;
+        for (int i = 0; i < length; i++) {
+            final long key = ids[i];
+            if (key < previous) {
+                from = 0;
+            }
+            previous = key;
+            final long idx = indexOf(key, from);
+            if (idx < 0) {
+                ids[i] = MISSING;
+                missing++;
+            } else {
+                ids[i] = value(idx);
+                from = idx;
+            }
+        }
+        return missing;
+    }
+
+    /** Compare every block of entries with its checksum. */
+    public void verify() {
+        final var crc = new CRC32C();
+        for (long block = 0; block < blocks(count); block++) {
+            final long first = block * BLOCK_ENTRIES;
+            final int entries = (int) Math.min(BLOCK_ENTRIES, count - first);
+            // blocks never cross a segment, a segment holds a whole number of them
+            final var segment = segments[(int) (first >>> SEGMENT_SHIFT)].duplicate();
+            final int position = (int) (first & SEGMENT_MASK) * ENTRY_BYTES;
+            segment.position(position).limit(position + entries * ENTRY_BYTES);
+            crc.reset();
+            crc.update(segment);
+            if ((int) crc.getValue() != checksums.getInt((int) block * Integer.BYTES)) {
+                final var FMT = "Mapping file %s is corrupt in block %d";
+                throw new IllegalStateException(String.format(FMT, file, block));
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        // the buffers are unmapped once they're collected
+        Arrays.fill(segments, null);
+    }
+
+    /** Writes a mapping file, the keys have to be added in increasing order. */
+    public static class Writer implements Closeable {
+
+        private final File file;
+        private final FileChannel channel;
+        private final ByteBuffer block = ByteBuffer.allocate(BLOCK_ENTRIES * ENTRY_BYTES);
+        private final CRC32C crc = new CRC32C();
+        private int[] checksums = new int[1024];
+        private int blocks = 0;
+        private long count = 0;
+        private long firstKey = 0;
+        private long lastKey = 0;
+
+        Writer(File file) {
+            this.file = file;
+            try {
+                this.channel =
+                        FileChannel.open(
+                                file.toPath(),
+                                StandardOpenOption.CREATE,
+                                StandardOpenOption.TRUNCATE_EXISTING,
+                                StandardOpenOption.WRITE);
+                // the header is written last, a partial file has no magic
+                channel.position(HEADER_BYTES);
+            } catch (IOException ioe) {
+                throw new IllegalStateException(ioe);
+            }
+        }
+
+        public void add(long key, long value) {
+            if (count > 0 && key <= lastKey) {
+                final var FMT = "Keys must increase, %d added after %d";
+                throw new IllegalArgumentException(String.format(FMT, key, lastKey));
+            }
+            if (count == 0) {
+                firstKey = key;
+            }
+            lastKey = key;
+            count++;
+            block.putLong(key).putLong(value);
+            if (!block.hasRemaining()) {
+                flushBlock();
+            }
+        }
+
+        public long size() {
+            return count;
+        }
+
+        void flushBlock() {
+            block.flip();
+            crc.reset();
+            crc.update(block.duplicate());
+            if (blocks == checksums.length) {
+                checksums = Arrays.copyOf(checksums, blocks * 2);
+            }
+            checksums[blocks++] = (int) crc.getValue();
+            write(block, -1);
+            block.clear();
+        }
+
+        void write(ByteBuffer buffer, long position) {
+            try {
+                while (buffer.hasRemaining()) {
+                    if (position < 0) {
+                        channel.write(buffer);
+                    } else {
+                        position += channel.write(buffer, position);
+                    }
+                }
+            } catch (IOException ioe) {
+                throw new IllegalStateException("Unable to write mapping file: " + file, ioe);
+            }
+        }
+
+        @Override
+        public void close() {
+            try (channel) {
+                if (block.position() > 0) {
+                    flushBlock();
+                }
+                final var trailer = ByteBuffer.allocate(blocks * Integer.BYTES);
+                trailer.asIntBuffer().put(checksums, 0, blocks);
+                write(trailer, -1);
+
+                final var header = ByteBuffer.allocate(HEADER_BYTES);
+                header.putInt(MAGIC).putInt(VERSION).putLong(count);
+                header.putInt(BLOCK_ENTRIES).putInt(0).putLong(firstKey).putLong(lastKey);
+                crc.reset();
+                crc.update(header.array(), 0, HEADER_CRC_OFFSET);
+                header.putInt(HEADER_CRC_OFFSET, (int) crc.getValue());
+                header.clear();
+                write(header, 0);
+                channel.force(true);
+            } catch (IOException ioe) {
+                throw new IllegalStateException("Unable to write mapping file: " + file, ioe);
+            }
+        }
+    }
+}
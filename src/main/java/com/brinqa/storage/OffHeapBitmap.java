@@ -0,0 +1,131 @@
+package com.brinqa.storage;
+
+import java.io.Closeable;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.util.Arrays;
+
+/**
+ * Bitmap of IDs kept outside the heap in direct buffers. The bits are split in segments of 128 MB
+ * that are only allocated once a bit in them is set, so a sparse set of a large store stays small.
+ *
+ * <p>Not thread safe.
+ */
+public class OffHeapBitmap implements Closeable {
+
+    // bits of one segment, 128 MB
+    static final int SEGMENT_SHIFT = 30;
+    static final long SEGMENT_MASK = (1L << SEGMENT_SHIFT) - 1;
+
+    private final long capacity;
+    private final LongBuffer[] segments;
+    private long cardinality = 0L;
+
+    /** @param capacity number of bits, IDs run from 0 to the capacity */
+    public OffHeapBitmap(long capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("Capacity must not be negative: " + capacity);
+        }
+        this.capacity = capacity;
+        this.segments = new LongBuffer[(int) ((capacity + SEGMENT_MASK) >>> SEGMENT_SHIFT)];
+    }
+
+    public long capacity() {
+        return capacity;
+    }
+
+    /** Number of bits set. */
+    public long cardinality() {
+        return cardinality;
+    }
+
+    void check(long id) {
+        if (id < 0 || id >= capacity) {
+            final var FMT = "ID %d is outside the bitmap of %d";
+            throw new IndexOutOfBoundsException(String.format(FMT, id, capacity));
+        }
+    }
+
+    LongBuffer segment(int s) {
+        if (null == segments[s]) {
+            final long bits = Math.min(1L << SEGMENT_SHIFT, capacity - ((long) s << SEGMENT_SHIFT));
+            final int words = (int) ((bits + Long.SIZE - 1) >>> 6);
+            // direct buffers start zeroed
+            segments[s] = ByteBuffer.allocateDirect(words * Long.BYTES).asLongBuffer();
+        }
+        return segments[s];
+    }
+
+    /** @return true if the bit wasn't set before */
+    public boolean set(long id) {
+        check(id);
+        final var segment = segment((int) (id >>> SEGMENT_SHIFT));
+        final int word = (int) ((id & SEGMENT_MASK) >>> 6);
+        final long bit = 1L << id;
+        final long old = segment.get(word);
+        if ((old & bit) != 0) {
+            return false;
+        }
+        segment.put(word, old | bit);
+        cardinality++;
+        return true;
+    }
+
+    public boolean get(long id) {
+        if (id < 0 || id >= capacity) {
+            return false;
+        }
+        final var segment = segments[(int) (id >>> SEGMENT_SHIFT)];
+        if (null == segment) {
+            return false;
+        }
+        return (segment.get((int) ((id & SEGMENT_MASK) >>> 6)) & (1L << id)) != 0;
+    }
+
+    /** @return the first bit set at or after the ID, -1 if there's none */
+    public long nextSetBit(long from) {
+        long id = Math.max(0, from);
+        while (id < capacity) {
+            final int s = (int) (id >>> SEGMENT_SHIFT);
+            final var segment = segments[s];
+            if (null == segment) {
+                id = (long) (s + 1) << SEGMENT_SHIFT;
+                continue;
+            }
+            int word = (int) ((id & SEGMENT_MASK) >>> 6);
+            // ignore the bits before the ID in its word
+            long bits = segment.get(word) & (-1L << id);
+            while (bits == 0) {
+                if (++word == segment.capacity()) {
+                    break;
+                }
+                bits = segment.get(word);
+            }
+            if (bits != 0) {
+                final long found =
+                        ((long) s << SEGMENT_SHIFT)
+                                + ((long) word << 6)
+                                + Long.numberOfTrailingZeros(bits);
+                return found < capacity ? found : -1L;
+            }
+            id = (long) (s + 1) << SEGMENT_SHIFT;
+        }
+        return -1L;
+    }
+
+    /** Bytes allocated for the segments in use. */
+    public long allocated() {
+        long ret = 0L;
+        for (LongBuffer segment : segments) {
+            ret += null == segment ? 0 : (long) segment.capacity() * Long.BYTES;
+        }
+        return ret;
+    }
+
+    /** The buffers are released once they're collected. */
+    @Override
+    public void close() {
+        Arrays.fill(segments, null);
+        cardinality = 0L;
+    }
+}
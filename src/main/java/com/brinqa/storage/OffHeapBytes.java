@@ -0,0 +1,77 @@
+package com.brinqa.storage;
+
+import java.io.Closeable;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * A byte per ID kept outside the heap in direct buffers. Like {@link OffHeapBitmap} the bytes are
+ * split in segments of 128 MB that are only allocated once a byte in them is set, unset bytes read
+ * as 0.
+ *
+ * <p>Not thread safe.
+ */
+public class OffHeapBytes implements Closeable {
+
+    // bytes of one segment, 128 MB
+    static final int SEGMENT_SHIFT = 27;
+    static final long SEGMENT_MASK = (1L << SEGMENT_SHIFT) - 1;
+
+    private final long capacity;
+    private final ByteBuffer[] segments;
+
+    /** @param capacity number of bytes, IDs run from 0 to the capacity */
+    public OffHeapBytes(long capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("Capacity must not be negative: " + capacity);
+        }
+        this.capacity = capacity;
+        this.segments = new ByteBuffer[(int) ((capacity + SEGMENT_MASK) >>> SEGMENT_SHIFT)];
+    }
+
+    public long capacity() {
+        return capacity;
+    }
+
+    ByteBuffer segment(int s) {
+        if (null == segments[s]) {
+            final long first = (long) s << SEGMENT_SHIFT;
+            final long bytes = Math.min(1L << SEGMENT_SHIFT, capacity - first);
+            // direct buffers start zeroed
+            segments[s] = ByteBuffer.allocateDirect((int) bytes);
+        }
+        return segments[s];
+    }
+
+    public void set(long id, byte value) {
+        if (id < 0 || id >= capacity) {
+            final var FMT = "ID %d is outside the array of %d";
+            throw new IndexOutOfBoundsException(String.format(FMT, id, capacity));
+        }
+        segment((int) (id >>> SEGMENT_SHIFT)).put((int) (id & SEGMENT_MASK), value);
+    }
+
+    /** @return the byte of the ID, 0 if it was never set */
+    public byte get(long id) {
+        if (id < 0 || id >= capacity) {
+            return 0;
+        }
+        final var segment = segments[(int) (id >>> SEGMENT_SHIFT)];
+        return null == segment ? 0 : segment.get((int) (id & SEGMENT_MASK));
+    }
+
+    /** Bytes allocated for the segments in use. */
+    public long allocated() {
+        long ret = 0L;
+        for (ByteBuffer segment : segments) {
+            ret += null == segment ? 0 : segment.capacity();
+        }
+        return ret;
+    }
+
+    /** The buffers are released once they're collected. */
+    @Override
+    public void close() {
+        Arrays.fill(segments, null);
+    }
+}
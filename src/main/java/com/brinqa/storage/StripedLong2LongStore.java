@@ -0,0 +1,122 @@
+package com.brinqa.storage;
+
+import com.google.common.util.concurrent.Striped;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * Mapping that several threads can write at once. Keys are split into ranges and the ranges are
+ * dealt round robin to a number of {@link Long2LongStore} stripes, so workers copying different
+ * ranges of IDs write to different RocksDB instances.
+ *
+ * <p>A put checks for the key before writing it, to keep the count right. The check and the write
+ * run under a lock picked by the key, so two threads only wait on each other if their keys share a
+ * lock, and a key written twice is only counted once. Reads don't lock.
+ */
+public class StripedLong2LongStore implements Long2LongMapping {
+
+    // same ranges as the incremental copy fingerprints
+    static final int RANGE_SHIFT = 16;
+    static final int LOCKS_PER_STRIPE = 64;
+
+    private final Long2LongStore[] stripes;
+    private final Striped<Lock> locks;
+
+    public StripedLong2LongStore(int stripes) {
+        if (stripes < 1) {
+            throw new IllegalArgumentException("At least one stripe is required: " + stripes);
+        }
+        this.stripes = new Long2LongStore[stripes];
+        for (int i = 0; i < stripes; i++) {
+            this.stripes[i] = new Long2LongStore();
+        }
+        this.locks = Striped.lock(stripes * LOCKS_PER_STRIPE);
+    }
+
+    int stripeOf(long key) {
+        return (int) Long.remainderUnsigned(key >>> RANGE_SHIFT, stripes.length);
+    }
+
+    Long2LongStore stripe(long key) {
+        return stripes[stripeOf(key)];
+    }
+
+    public int stripes() {
+        return stripes.length;
+    }
+
+    @Override
+    public void put(final Long key, final Long value) {
+        assert key != null && value != null;
+        final var lock = locks.get(key);
+        lock.lock();
+        try {
+            stripe(key).put(key, value);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Put the value unless the key is mapped already, so workers racing on the same key agree on
+     * one value.
+     *
+     * @return the value already mapped, null if the value given was put.
+     */
+    public Long putIfAbsent(final Long key, final Long value) {
+        assert key != null && value != null;
+        final var lock = locks.get(key);
+        lock.lock();
+        try {
+            final var store = stripe(key);
+            final Long existing = store.get(key);
+            if (null == existing) {
+                store.put(key, value);
+            }
+            return existing;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Long get(final Long key) {
+        assert key != null;
+        return stripe(key).get(key);
+    }
+
+    @Override
+    public void remove(final Long key) {
+        assert key != null;
+        final var lock = locks.get(key);
+        lock.lock();
+        try {
+            stripe(key).remove(key);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Sum of the stripe counters, exact once the writers are done. */
+    @Override
+    public int size() {
+        int ret = 0;
+        for (Long2LongStore stripe : stripes) {
+            ret += stripe.size();
+        }
+        return ret;
+    }
+
+    @Override
+    public void delete() {
+        for (Long2LongStore stripe : stripes) {
+            stripe.delete();
+        }
+    }
+
+    @Override
+    public void close() {
+        for (Long2LongStore stripe : stripes) {
+            stripe.close();
+        }
+    }
+}
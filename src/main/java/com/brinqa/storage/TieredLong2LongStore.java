@@ -0,0 +1,324 @@
+package com.brinqa.storage;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Supplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps the mapping in a primitive open addressing hash table until the table reaches its memory
+ * budget, then spills the table to a {@link Long2LongStore} as one sorted run and starts filling it
+ * again. Lookups check the table first, so a mapping that fits the budget never touches RocksDB.
+ *
+ * <p>Reads are optimistic and only take the lock if a write got in the way, writes are exclusive.
+ */
+public class TieredLong2LongStore implements Long2LongMapping {
+
+    public static final Logger LOG = LoggerFactory.getLogger(TieredLong2LongStore.class);
+
+    static final int MIN_CAPACITY = 16;
+    static final int MAX_CAPACITY = 1 << 30;
+    // a slot is a key and a value
+    static final int SLOT_BYTES = 2 * Long.BYTES;
+    // marks a free slot, the key itself is kept outside the table
+    static final long FREE = Long.MIN_VALUE;
+
+    /** Keys and values are swapped together, so a reader never sees a mix of two tables. */
+    static final class Table {
+        final long[] keys;
+        final long[] values;
+        final int mask;
+
+        Table(int capacity) {
+            this.keys = new long[capacity];
+            this.values = new long[capacity];
+            this.mask = capacity - 1;
+            Arrays.fill(keys, FREE);
+        }
+
+        int capacity() {
+            return keys.length;
+        }
+    }
+
+    private final StampedLock lock = new StampedLock();
+    private final int maxCapacity;
+    private final Supplier<Long2LongStore> spillStore;
+
+    private volatile Table table;
+    private int used = 0;
+    private boolean hasFreeKey = false;
+    private long freeKeyValue = 0L;
+
+    private Long2LongStore cold = null;
+    // keys in the table that are also in the cold store
+    private int overlap = 0;
+    // range of the spilled keys, a key outside of it can't be in the cold store
+    private long coldMin = Long.MAX_VALUE;
+    private long coldMax = Long.MIN_VALUE;
+    private volatile int spills = 0;
+
+    /** @param memoryBudget bytes the table may use before it spills */
+    public TieredLong2LongStore(long memoryBudget) {
+        this(memoryBudget, Long2LongStore::new);
+    }
+
+    TieredLong2LongStore(long memoryBudget, Supplier<Long2LongStore> spillStore) {
+        this.maxCapacity = capacityFor(memoryBudget);
+        this.spillStore = spillStore;
+        this.table = new Table(Math.min(1 << 10, maxCapacity));
+    }
+
+    /** Largest power of two of slots that fits the budget. */
+    static int capacityFor(long memoryBudget) {
+        final long slots = Math.max(MIN_CAPACITY, memoryBudget / SLOT_BYTES);
+        return (int) Math.min(MAX_CAPACITY, Long.highestOneBit(slots));
+    }
+
+    static int slot(long key, int mask) {
+        final long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+    /** Slot of the key, or -1 if it's not in the table. */
+    static int indexOf(Table t, long key) {
+        int idx = slot(key, t.mask);
+        for (int probes = 0; probes < t.capacity(); probes++) {
+            final long k = t.keys[idx];
+            if (k == key) {
+                return idx;
+            }
+            if (k == FREE) {
+                return -1;
+            }
+            idx = (idx + 1) & t.mask;
+        }
+        return -1;
+    }
+
+    @Override
+    public Long get(final Long key) {
+        assert key != null;
+        final long stamp = lock.tryOptimisticRead();
+        if (stamp != 0L && key != FREE) {
+            final Table t = table;
+            final int idx = indexOf(t, key);
+            final long value = idx < 0 ? 0L : t.values[idx];
+            // without a cold store that may hold the key a miss is final
+            final boolean found = idx >= 0 || !mayBeCold(key);
+            if (found && lock.validate(stamp)) {
+                return idx < 0 ? null : value;
+            }
+        }
+        final long read = lock.readLock();
+        try {
+            final Long hot = hotGet(key);
+            if (null != hot || !mayBeCold(key)) {
+                return hot;
+            }
+            return cold.get(key);
+        } finally {
+            lock.unlockRead(read);
+        }
+    }
+
+    Long hotGet(long key) {
+        if (key == FREE) {
+            return hasFreeKey ? freeKeyValue : null;
+        }
+        final Table t = table;
+        final int idx = indexOf(t, key);
+        return idx < 0 ? null : t.values[idx];
+    }
+
+    @Override
+    public void put(final Long key, final Long value) {
+        assert key != null && value != null;
+        final long stamp = lock.writeLock();
+        try {
+            if (key == FREE) {
+                if (!hasFreeKey && inCold(key)) {
+                    overlap++;
+                }
+                hasFreeKey = true;
+                freeKeyValue = value;
+                return;
+            }
+            final Table t = table;
+            final int existing = indexOf(t, key);
+            if (existing >= 0) {
+                t.values[existing] = value;
+                return;
+            }
+            if (inCold(key)) {
+                overlap++;
+            }
+            insert(t, key, value);
+            used++;
+            if (used >= t.capacity() / 2) {
+                if (t.capacity() < maxCapacity) {
+                    resize(t.capacity() * 2);
+                } else {
+                    spill();
+                }
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /** Copies insert in ascending key order, so the range check spares nearly every read. */
+    boolean mayBeCold(long key) {
+        return null != cold && key >= coldMin && key <= coldMax;
+    }
+
+    boolean inCold(long key) {
+        return mayBeCold(key) && null != cold.get(key);
+    }
+
+    static void insert(Table t, long key, long value) {
+        int idx = slot(key, t.mask);
+        while (t.keys[idx] != FREE) {
+            idx = (idx + 1) & t.mask;
+        }
+        t.keys[idx] = key;
+        t.values[idx] = value;
+    }
+
+    void resize(int capacity) {
+        final Table old = table;
+        final Table t = new Table(capacity);
+        for (int i = 0; i < old.capacity(); i++) {
+            if (old.keys[i] != FREE) {
+                insert(t, old.keys[i], old.values[i]);
+            }
+        }
+        table = t;
+    }
+
+    /** Move the table to the cold store in key order, RocksDB takes sorted writes fastest. */
+    void spill() {
+        final Table t = table;
+        final int count = used + (hasFreeKey ? 1 : 0);
+        final long[] keys = new long[count];
+        final long[] values = new long[count];
+        int n = 0;
+        for (int i = 0; i < t.capacity(); i++) {
+            if (t.keys[i] != FREE) {
+                keys[n++] = t.keys[i];
+            }
+        }
+        if (hasFreeKey) {
+            keys[n++] = FREE;
+        }
+        Arrays.sort(keys, 0, n);
+        for (int i = 0; i < n; i++) {
+            values[i] = keys[i] == FREE ? freeKeyValue : t.values[indexOf(t, keys[i])];
+        }
+        if (null == cold) {
+            cold = spillStore.get();
+        }
+        cold.putAll(keys, values, n, n - overlap);
+        if (n > 0) {
+            coldMin = Math.min(coldMin, keys[0]);
+            coldMax = Math.max(coldMax, keys[n - 1]);
+        }
+        spills++;
+        LOG.info("Spilled {} mapping(s) to disk, spill {}", n, spills);
+
+        // readers validate against the write lock, so the table can be cleared in place
+        Arrays.fill(t.keys, FREE);
+        used = 0;
+        hasFreeKey = false;
+        overlap = 0;
+    }
+
+    @Override
+    public void remove(final Long key) {
+        assert key != null;
+        final long stamp = lock.writeLock();
+        try {
+            final boolean wasInCold = inCold(key);
+            boolean removed = false;
+            if (key == FREE) {
+                removed = hasFreeKey;
+                hasFreeKey = false;
+            } else {
+                final Table t = table;
+                final int idx = indexOf(t, key);
+                if (idx >= 0) {
+                    delete(t, idx);
+                    used--;
+                    removed = true;
+                }
+            }
+            if (wasInCold) {
+                if (removed) {
+                    overlap--;
+                }
+                cold.remove(key);
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /** Linear probing delete, the entries after the slot shift back so lookups still find them. */
+    static void delete(Table t, int idx) {
+        int gap = idx;
+        int next = (gap + 1) & t.mask;
+        while (t.keys[next] != FREE) {
+            final int home = slot(t.keys[next], t.mask);
+            // move the entry into the gap unless its home slot lies after the gap
+            if (((next - home) & t.mask) >= ((next - gap) & t.mask)) {
+                t.keys[gap] = t.keys[next];
+                t.values[gap] = t.values[next];
+                gap = next;
+            }
+            next = (next + 1) & t.mask;
+        }
+        t.keys[gap] = FREE;
+    }
+
+    @Override
+    public int size() {
+        final long stamp = lock.readLock();
+        try {
+            final int hot = used + (hasFreeKey ? 1 : 0);
+            return (null == cold ? 0 : cold.size()) + hot - overlap;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /** Number of times the table has been spilled to disk. */
+    public int spills() {
+        return spills;
+    }
+
+    @Override
+    public void delete() {
+        close();
+    }
+
+    /** The spilled entries live in a temporary store, so they're removed with the mapping. */
+    @Override
+    public void close() {
+        final long stamp = lock.writeLock();
+        try {
+            table = new Table(MIN_CAPACITY);
+            used = 0;
+            hasFreeKey = false;
+            overlap = 0;
+            coldMin = Long.MAX_VALUE;
+            coldMax = Long.MIN_VALUE;
+            if (null != cold) {
+                cold.delete();
+                cold = null;
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+}
@@ -18,11 +18,13 @@ package org.neo4j.tool;
 import static org.neo4j.tool.util.Print.println;
 
 import java.io.IOException;
+import java.util.concurrent.TimeUnit;
 import org.neo4j.driver.AuthTokens;
 import org.neo4j.driver.Config;
 import org.neo4j.driver.Driver;
 import org.neo4j.driver.GraphDatabase;
 import org.neo4j.driver.exceptions.ServiceUnavailableException;
+import org.neo4j.driver.exceptions.SessionExpiredException;
 import org.neo4j.tool.index.IndexManager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -32,6 +34,10 @@ abstract class AbstractIndexCommand implements Runnable {
 
     private static final Logger LOG = LoggerFactory.getLogger(AbstractIndexCommand.class);
 
+    static final long CONNECT_TIMEOUT = 30L;
+    static final long INITIAL_BACKOFF = 500L;
+    static final long MAX_BACKOFF = 10_000L;
+
     @Option(
             names = {"-n", "--no_auth"},
             description = "No authentication.")
@@ -55,10 +61,29 @@ abstract class AbstractIndexCommand implements Runnable {
             defaultValue = "${NEO4J_PASSWORD}")
     protected String password;
 
+    @Option(
+            names = {"--maxConnections"},
+            description = "Maximum number of connections in the driver pool.",
+            defaultValue = "16")
+    protected int maxConnections;
+
+    @Option(
+            names = {"--acquisitionTimeout"},
+            description = "Seconds to wait for a connection from the pool.",
+            defaultValue = "120")
+    protected long acquisitionTimeout;
+
+    @Option(
+            names = {"--connectAttempts"},
+            description = "Attempts to reach the server before giving up.",
+            defaultValue = "5")
+    protected int connectAttempts;
+
     @Override
     public void run() {
-        try (final var driver = buildDriver(uri, username, password, noAuth)) {
-            execute(new IndexManager(driver));
+        try (final var driver = buildDriver(uri, username, password, noAuth);
+                final var indexManager = new IndexManager(driver)) {
+            execute(indexManager);
         } catch (IOException ioe) {
             throw new IllegalStateException(ioe);
         }
@@ -67,21 +92,48 @@ abstract class AbstractIndexCommand implements Runnable {
     abstract void execute(IndexManager manager) throws IOException;
 
     private Driver buildDriver(String uri, String username, String password, boolean noAuth) {
-        // create the driver
-        for (int i = 0; i < 5; i++) {
+        final var config =
+                Config.builder()
+                        .withMaxConnectionPoolSize(maxConnections)
+                        .withConnectionAcquisitionTimeout(acquisitionTimeout, TimeUnit.SECONDS)
+                        .withConnectionTimeout(CONNECT_TIMEOUT, TimeUnit.SECONDS)
+                        .build();
+        final Driver driver;
+        if (noAuth) {
+            println("Attempting to connect without authentication.");
+            driver = GraphDatabase.driver(uri, config);
+        } else {
+            println("Attempting to connect with basic authentication.");
+            driver = GraphDatabase.driver(uri, AuthTokens.basic(username, password), config);
+        }
+
+        // the driver connects lazily, so check the server is there before doing any work
+        long backoff = INITIAL_BACKOFF;
+        for (int attempt = 1; ; attempt++) {
             try {
-                final var config = Config.defaultConfig();
-                if (noAuth) {
-                    println("Attempting to connect without authentication.");
-                    return GraphDatabase.driver(uri, config);
+                driver.verifyConnectivity();
+                return driver;
+            } catch (ServiceUnavailableException | SessionExpiredException ex) {
+                if (attempt >= connectAttempts) {
+                    driver.close();
+                    throw new IllegalStateException("Unable to connect to Neo4J: " + uri, ex);
                 }
-                println("Attempting to connect with basic authentication.");
-                final var token = AuthTokens.basic(username, password);
-                return GraphDatabase.driver(uri, token, config);
-            } catch (ServiceUnavailableException ex) {
-                LOG.error("Failed to connect retrying..");
+                LOG.error("Failed to connect, retrying in {}ms: {}", backoff, ex.getMessage());
+                sleep(backoff);
+                backoff = Math.min(MAX_BACKOFF, backoff * 2);
+            } catch (RuntimeException ex) {
+                driver.close();
+                throw ex;
             }
         }
-        throw new IllegalStateException("Unable to connect to Neo4J: " + uri);
+    }
+
+    static void sleep(long ms) {
+        try {
+            TimeUnit.MILLISECONDS.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
     }
 }
@@ -53,11 +53,8 @@ public class DropIndex extends AbstractIndexCommand {
     @Override
     void execute(final IndexManager indexManager) {
         // query for all the indexes
-        final List<IndexData> indexes = indexManager.readIndexesFromFile(this.file);
+        final List<IndexData> indexes = IndexManager.readIndexesFromFile(this.file);
         println("Dropping indexes from file: %s", this.file.getAbsoluteFile());
-        for (IndexData index : indexes) {
-            println("Dropping %s", index.getName());
-            indexManager.dropIndex(index);
-        }
+        indexManager.dropIndexes(indexes);
     }
 }
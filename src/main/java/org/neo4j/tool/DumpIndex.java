@@ -18,12 +18,16 @@ package org.neo4j.tool;
 import static org.neo4j.tool.util.Print.println;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CompletionStage;
 import java.util.stream.Collectors;
 import org.neo4j.tool.dto.IndexData;
 import org.neo4j.tool.dto.IndexDataComparator;
+import org.neo4j.tool.dto.PropertyStats;
 import org.neo4j.tool.index.IndexManager;
+import org.neo4j.tool.index.ProviderAdvisor;
 import picocli.CommandLine;
 import picocli.CommandLine.Command;
 import picocli.CommandLine.Option;
@@ -51,6 +55,56 @@ public class DumpIndex extends AbstractIndexCommand {
             description = "Replace any index containing a property name with a Lucene index")
     protected Set<String> lucene;
 
+    @Option(
+            names = {"--auto-provider"},
+            description =
+                    "Choose the index provider of each index from a sample of its property values, the reason is written to the dump.")
+    protected boolean autoProvider;
+
+    @Option(
+            names = {"--sampleSize"},
+            description = "Number of property values sampled for each index.",
+            defaultValue = "10000")
+    protected int sampleSize;
+
+    @Option(
+            names = {"--maxKeyLength"},
+            description =
+                    "Use Lucene if any sampled string may be longer than this in UTF-8 bytes, strings outside ASCII count 4 bytes per character.",
+            defaultValue = "4000")
+    protected long maxKeyLength;
+
+    @Option(
+            names = {"--longLength"},
+            description = "Length above which a string is counted as long.",
+            defaultValue = "512")
+    protected long longLength;
+
+    @Option(
+            names = {"--longShare"},
+            description = "Use Lucene if more than this percentage of the strings are long.",
+            defaultValue = "10")
+    protected double longShare;
+
+    @Option(
+            names = {"--averageLength"},
+            description = "Use Lucene if the average string length is above this.",
+            defaultValue = "256")
+    protected double averageLength;
+
+    @Option(
+            names = {"--lowCardinality"},
+            description =
+                    "Use Lucene if fewer than this percentage of the sampled values are distinct and the strings average over --repeatedLength.",
+            defaultValue = "1")
+    protected double lowCardinality;
+
+    @Option(
+            names = {"--repeatedLength"},
+            description = "Average string length above which low cardinality values use Lucene.",
+            defaultValue = "64")
+    protected double repeatedLength;
+
     // this example implements Callable, so parsing, error handling and handling user
     // requests for usage help or version help can be done with one line of code.
     public static void main(String... args) {
@@ -61,7 +115,9 @@ public class DumpIndex extends AbstractIndexCommand {
     @Override
     void execute(final IndexManager indexManager) {
         // query for all the indexes
-        final List<IndexData> indexes = indexManager.readDBIndexes();
+        final List<IndexData> dbIndexes = indexManager.readDBIndexes();
+        final List<IndexData> indexes =
+                autoProvider ? adviseProviders(indexManager, dbIndexes) : dbIndexes;
         println("Building index file: %s", this.file);
         final List<IndexData> writeIndexes =
                 (lucene == null || lucene.isEmpty()) ? indexes : luceneIndex(indexes);
@@ -69,7 +125,45 @@ public class DumpIndex extends AbstractIndexCommand {
                 writeIndexes.stream()
                         .sorted(new IndexDataComparator())
                         .collect(Collectors.toList());
-        indexManager.writeIndexes(sortedIndexes, this.file);
+        IndexManager.writeIndexes(sortedIndexes, this.file);
+    }
+
+    /** Pick the provider of each index from the sampled values of its properties. */
+    List<IndexData> adviseProviders(IndexManager indexManager, List<IndexData> indexes) {
+        final var advisor =
+                ProviderAdvisor.builder()
+                        .maxKeyLength(maxKeyLength)
+                        .longLength(longLength)
+                        .longShare(longShare / 100d)
+                        .averageLength(averageLength)
+                        .lowCardinality(lowCardinality / 100d)
+                        .repeatedLength(repeatedLength)
+                        .build();
+        final List<IndexData> ret = new ArrayList<>();
+        for (IndexData index : indexes) {
+            // the properties of a composite index are sampled together
+            final List<CompletionStage<PropertyStats>> samples = new ArrayList<>();
+            if (!index.isUniqueness() && "BTREE".equalsIgnoreCase(index.getType())) {
+                final var labelOrType = index.getLabelsOrTypes().get(0);
+                for (String property : index.getProperties()) {
+                    samples.add(
+                            indexManager.sampleProperty(
+                                    index.getEntityType(),
+                                    labelOrType,
+                                    property,
+                                    sampleSize,
+                                    longLength));
+                }
+            }
+            final List<PropertyStats> stats =
+                    samples.stream().map(IndexManager::await).collect(Collectors.toList());
+            final var advised = advisor.advise(index, stats);
+            println(
+                    "%s: %s (%s)",
+                    index.getName(), advised.getIndexProvider(), advised.getProviderReason());
+            ret.add(advised);
+        }
+        return ret;
     }
 
     /** Substitute the index for lucene */
@@ -83,6 +177,9 @@ public class DumpIndex extends AbstractIndexCommand {
     }
 
     IndexData modifyIndexProvider(IndexData data) {
-        return data.toBuilder().indexProvider("lucene+native-3.0").build();
+        return data.toBuilder()
+                .indexProvider(ProviderAdvisor.LUCENE)
+                .providerReason("named with --lucene")
+                .build();
     }
 }
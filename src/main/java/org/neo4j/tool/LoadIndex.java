@@ -15,17 +15,31 @@
  */
 package org.neo4j.tool;
 
+import static org.apache.commons.lang3.time.DurationFormatUtils.formatDuration;
+import static org.neo4j.tool.index.IndexManager.isRelationship;
 import static org.neo4j.tool.util.Print.println;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 import org.apache.commons.lang3.tuple.Pair;
-import org.neo4j.internal.helpers.collection.Iterables;
+import org.neo4j.tool.VersionQuery.Neo4jVersion;
 import org.neo4j.tool.dto.Bucket;
+import org.neo4j.tool.dto.EntityCounts;
 import org.neo4j.tool.dto.IndexData;
+import org.neo4j.tool.dto.PopulationStats;
 import org.neo4j.tool.index.BucketBuilder;
+import org.neo4j.tool.index.IndexCostModel;
 import org.neo4j.tool.index.IndexManager;
+import org.neo4j.tool.index.IndexScheduler;
+import org.neo4j.tool.index.PopulationTracker;
+import org.neo4j.tool.index.SchemaPlanner;
 import picocli.CommandLine;
 import picocli.CommandLine.Command;
 import picocli.CommandLine.Option;
@@ -40,7 +54,7 @@ import picocli.CommandLine.Option;
         name = "loadIndex",
         version = "loadIndex 1.0",
         description =
-                "Creates indexes and constraints based on the file provided, skips existing indexes and constraints by name.")
+                "Creates indexes and constraints based on the file provided, only the ones missing or defined differently are dropped and created.")
 public class LoadIndex extends AbstractIndexCommand {
 
     @Option(
@@ -60,6 +74,62 @@ public class LoadIndex extends AbstractIndexCommand {
             description = "Recreate each of the indexes in the file.")
     protected boolean recreate;
 
+    @Option(
+            names = {"--plan"},
+            description = "Print the changes needed to match the file, without making them.")
+    protected boolean planOnly;
+
+    @Option(
+            names = {"-c", "--concurrency"},
+            description =
+                    "Maximum number of indexes populating at once, by default indexes are created in buckets by size.",
+            defaultValue = "0")
+    protected int concurrency;
+
+    @Option(
+            names = {"-w", "--maxWeight"},
+            description =
+                    "Maximum number of entities populating at once across all indexes, used with concurrency.",
+            defaultValue = "10000000")
+    protected long maxWeight = 10_000_000L;
+
+    @Option(
+            names = {"--maxCost"},
+            description =
+                    "Estimated population work of a batch, entries weighted by provider and uniqueness, when creating in batches.",
+            defaultValue = "100000000")
+    protected long maxCost = BucketBuilder.DEFAULT_MAX_COST;
+
+    @Option(
+            names = {"--luceneWeight"},
+            description = "Cost of a Lucene entry relative to a B-tree entry.",
+            defaultValue = "2.0")
+    protected double luceneWeight = 2.0;
+
+    @Option(
+            names = {"--uniquenessWeight"},
+            description = "Cost of a constraint entry relative to an index entry.",
+            defaultValue = "1.5")
+    protected double uniquenessWeight = 1.5;
+
+    @Option(
+            names = {"--refreshCounts"},
+            description = "Count again instead of using the counts cached next to the file.")
+    protected boolean refreshCounts;
+
+    @Option(
+            names = {"--maxHeap"},
+            description = "Server heap usage, in percent, above which new indexes are held back.",
+            defaultValue = "85")
+    protected int maxHeap = 85;
+
+    @Option(
+            names = {"--maxGc"},
+            description =
+                    "Share of server time spent in garbage collection, in percent, above which new indexes are held back.",
+            defaultValue = "20")
+    protected int maxGc = 20;
+
     // this example implements Callable, so parsing, error handling and handling user
     // requests for usage help or version help can be done with one line of code.
     public static void main(String... args) {
@@ -70,7 +140,7 @@ public class LoadIndex extends AbstractIndexCommand {
     @Override
     void execute(final IndexManager indexManager) {
         final var ver = indexManager.determineVersion();
-        final var fileIndexes = indexManager.readIndexesFromFile(file);
+        final var fileIndexes = IndexManager.readIndexesFromFile(file);
 
         // just print all the queries
         if (dryRun) {
@@ -81,45 +151,181 @@ public class LoadIndex extends AbstractIndexCommand {
             return;
         }
 
-        // buckets sizes <1k (100 per), <10k (10 per), <100k (2 per), >100k (1 per)
-        final var indexNames = indexManager.readIndexNames();
-
-        // filter through missing
-        final var missing =
-                fileIndexes.stream()
-                        .filter(indexData -> filterExisting(indexNames, indexData))
-                        .collect(Collectors.toList());
+        // only the indexes missing or defined differently are changed
+        final var plan = SchemaPlanner.plan(fileIndexes, indexManager.readDBIndexes(), recreate);
+        printPlan(indexManager, ver, plan);
+        if (planOnly) {
+            return;
+        }
+        indexManager.dropTogether(plan.drops());
+        final var missing = creatable(indexManager, ver, plan.creates());
 
         // find all the sizes
+        final var counts = determineCounts(indexManager, missing);
         final var sizes =
                 missing.stream()
-                        .filter(idx -> idx.getLabelsOrTypes().size() == 1)
-                        .map(idx -> determineSize(indexManager, idx))
+                        .map(idx -> determineSize(counts, idx))
                         .collect(Collectors.toList());
 
+        final var tracker = indexManager.getTracker();
+        sizes.forEach(p -> tracker.expect(p.getKey(), p.getValue()));
+        final var statsFile = statsFile(file);
+        final var history =
+                statsFile.isFile()
+                        ? PopulationTracker.readStats(statsFile)
+                        : List.<PopulationStats>of();
+        final long estimate = PopulationTracker.estimate(history, toMap(sizes));
+        if (estimate >= 0) {
+            final var duration = formatDuration(estimate, "HH:mm:ss");
+            println("Estimated duration from previous runs: %s", duration);
+        }
+        try {
+            build(indexManager, ver, sizes);
+        } finally {
+            tracker.printSummary();
+            PopulationTracker.writeStats(merge(history, tracker.getCompleted()), statsFile);
+        }
+    }
+
+    void build(IndexManager indexManager, Neo4jVersion ver, List<Pair<IndexData, Long>> sizes) {
+        // keep populations in flight up to the weight budget
+        final var guard = indexManager.newGuard(maxHeap / 100d, maxGc / 100d);
+        if (concurrency > 0) {
+            final Consumer<IndexData> build = index -> indexManager.createAndAwait(ver, index);
+            final int failed = new IndexScheduler(build, concurrency, maxWeight, guard).run(sizes);
+            if (failed > 0) {
+                throw new IllegalStateException(failed + " index(es) failed to build");
+            }
+            return;
+        }
+
         // process each bucket
-        final var buckets = BucketBuilder.build(sizes);
+        final var model =
+                IndexCostModel.builder()
+                        .luceneWeight(luceneWeight)
+                        .uniquenessWeight(uniquenessWeight)
+                        .build();
+        final var buckets = BucketBuilder.build(sizes, model, maxCost);
         for (Bucket bucket : buckets) {
+            guard.awaitAdmission();
+            println("Creating %d index(es), cost: %,d", indexCount(bucket), bucket.getCost());
             indexManager.create(ver, bucket);
         }
     }
 
-    Pair<IndexData, Long> determineSize(IndexManager indexManager, IndexData idx) {
-        String label = Iterables.firstOrNull(idx.getLabelsOrTypes());
-        long size = indexManager.labelSize(label);
+    static Map<IndexData, Long> toMap(List<Pair<IndexData, Long>> sizes) {
+        final Map<IndexData, Long> ret = new LinkedHashMap<>();
+        sizes.forEach(p -> ret.put(p.getKey(), p.getValue()));
+        return ret;
+    }
+
+    /** The stats of this run replace the ones of earlier runs for the same index. */
+    static List<PopulationStats> merge(List<PopulationStats> history, List<PopulationStats> run) {
+        final Map<String, PopulationStats> ret = new LinkedHashMap<>();
+        history.forEach(s -> ret.put(s.getName(), s));
+        run.forEach(s -> ret.put(s.getName(), s));
+        return new ArrayList<>(ret.values());
+    }
+
+    static File statsFile(File dumpFile) {
+        final var name = dumpFile.getName().replaceFirst("\\.json$", "");
+        return new File(dumpFile.getAbsoluteFile().getParentFile(), name + ".stats.json");
+    }
+
+    static int indexCount(Bucket bucket) {
+        return bucket.getBatches().stream().mapToInt(b -> b.getIndexes().size()).sum();
+    }
+
+    /**
+     * Counts for the labels and types of the indexes. They're cached next to the dump file, so only
+     * the labels and types the cache is missing are queried.
+     */
+    EntityCounts determineCounts(IndexManager indexManager, List<IndexData> indexes) {
+        final var cache = countsFile(file);
+        var counts = EntityCounts.builder().build();
+        if (!refreshCounts && cache.isFile()) {
+            counts = IndexManager.readCounts(cache);
+            println("Using cached counts from %s, use --refreshCounts to count again.", cache);
+        }
+        final Set<String> labels = new TreeSet<>();
+        final Set<String> types = new TreeSet<>();
+        for (IndexData idx : indexes) {
+            if (isRelationship(idx)) {
+                types.addAll(idx.getLabelsOrTypes());
+            } else {
+                labels.addAll(idx.getLabelsOrTypes());
+            }
+        }
+        labels.removeAll(counts.getLabels().keySet());
+        types.removeAll(counts.getTypes().keySet());
+        if (labels.isEmpty() && types.isEmpty()) {
+            return counts;
+        }
+        println("Counting %d label(s) and %d relationship type(s)", labels.size(), types.size());
+        final var fetched = indexManager.entityCounts(labels, types);
+        counts =
+                counts.toBuilder()
+                        .labels(fetched.getLabels())
+                        .types(fetched.getTypes())
+                        .build();
+        IndexManager.writeCounts(counts, cache);
+        return counts;
+    }
+
+    /**
+     * Entities the index covers. A full-text index over several labels or types is sized by their
+     * sum, an entity with more than one of them is counted once for each.
+     */
+    Pair<IndexData, Long> determineSize(EntityCounts counts, IndexData idx) {
+        final var sizes = isRelationship(idx) ? counts.getTypes() : counts.getLabels();
+        final long size =
+                idx.getLabelsOrTypes().stream().mapToLong(t -> sizes.getOrDefault(t, 0L)).sum();
         return Pair.of(idx, size);
     }
 
-    boolean filterExisting(Set<String> indexNames, IndexData indexData) {
-        if (indexData.getLabelsOrTypes().isEmpty()) {
-            println("Filtering as there's no Label: %s", indexData);
-            return false;
+    /** Leave out the indexes this version of Neo4j can't create. */
+    static List<IndexData> creatable(
+            IndexManager indexManager, Neo4jVersion ver, List<IndexData> indexes) {
+        final List<IndexData> ret = new ArrayList<>();
+        for (IndexData index : indexes) {
+            try {
+                indexManager.indexOrConstraintQuery(ver, index);
+                ret.add(index);
+            } catch (IllegalArgumentException e) {
+                println("Skipping %s: %s", index.getName(), e.getMessage());
+            }
+        }
+        return ret;
+    }
+
+    static File countsFile(File dumpFile) {
+        final var name = dumpFile.getName().replaceFirst("\\.json$", "");
+        return new File(dumpFile.getAbsoluteFile().getParentFile(), name + ".counts.json");
+    }
+
+    void printPlan(IndexManager indexManager, Neo4jVersion ver, SchemaPlanner.Plan plan) {
+        for (IndexData index : plan.getSkipped()) {
+            println("Filtering as there's no Label: %s", index);
+        }
+        println(
+                "Plan: %d unchanged, %d to drop, %d to create, %d not in the file.",
+                plan.getUnchanged().size(),
+                plan.drops().size(),
+                plan.creates().size(),
+                plan.getExtra().size());
+        if (!planOnly) {
+            return;
+        }
+        for (SchemaPlanner.Action action : plan.getActions()) {
+            final var index = action.getIndex();
+            final var query =
+                    SchemaPlanner.Kind.DROP == action.getKind()
+                            ? indexManager.dropQuery(index)
+                            : indexManager.indexOrConstraintQuery(ver, index);
+            println("%s // %s", query, action.getReason());
         }
-        // if recreate always drop and then create
-        if (!recreate && indexNames.contains(indexData.getName())) {
-            println("Index with name '%s' already exists, skipping.", indexData.getName());
-            return false;
+        for (IndexData index : plan.getExtra()) {
+            println("// %s is not in the file, leaving it", index.getName());
         }
-        return true;
     }
 }
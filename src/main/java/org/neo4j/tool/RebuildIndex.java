@@ -15,23 +15,32 @@
  */
 package org.neo4j.tool;
 
+import static org.neo4j.tool.index.ServerGuard.DEFAULT_MAX_GC;
+import static org.neo4j.tool.index.ServerGuard.DEFAULT_MAX_HEAP;
 import static org.neo4j.tool.util.Print.println;
 
 import java.io.File;
-import java.io.IOException;
-import java.nio.file.Files;
-import org.apache.commons.lang3.StringUtils;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import org.apache.commons.lang3.tuple.Pair;
 import org.neo4j.tool.dto.IndexData;
+import org.neo4j.tool.index.IndexJournal;
 import org.neo4j.tool.index.IndexManager;
+import org.neo4j.tool.index.IndexScheduler;
 import picocli.CommandLine;
 import picocli.CommandLine.Command;
 import picocli.CommandLine.Option;
 
 /**
- * Rebuilds all the indexes one by one.
+ * Rebuilds all the indexes, one by one or a few at a time.
  *
  * <p>Neo4j will crash from either out of memory or too many files etc if you restore to many
- * indexes at once.
+ * indexes at once. Progress is kept in a journal so an interrupted rebuild resumes with only the
+ * indexes that didn't complete.
  */
 @Command(
         name = "rebuildIndex",
@@ -40,11 +49,17 @@ import picocli.CommandLine.Option;
 public class RebuildIndex extends AbstractIndexCommand {
 
     @Option(
-            defaultValue = "lastIndex",
+            defaultValue = "rebuildIndex.journal",
             names = {"-r", "--resume"},
-            description = "File to use for storing the last index.")
+            description = "Journal of the completed and in progress indexes, used to resume.")
     protected File file;
 
+    @Option(
+            defaultValue = "1",
+            names = {"--parallelism"},
+            description = "Number of indexes to rebuild at once.")
+    protected int parallelism = 1;
+
     // this example implements Callable, so parsing, error handling and handling user
     // requests for usage help or version help can be done with one line of code.
     public static void main(String... args) {
@@ -53,27 +68,65 @@ public class RebuildIndex extends AbstractIndexCommand {
     }
 
     @Override
-    void execute(final IndexManager indexManager) throws IOException {
-        final var indexes = indexManager.readDBIndexes();
+    void execute(final IndexManager indexManager) {
         final var ver = indexManager.determineVersion();
-        String lastIndexName = file.isFile() ? Files.readString(file.toPath()) : null;
-        for (final IndexData index : indexes) {
+        final var journal = new IndexJournal(file);
+        try (journal) {
+            final var indexes = remaining(indexManager.readDBIndexes(), journal);
+            if (journal.doneCount() > 0) {
+                println(
+                        "Resuming from %s, %d index(es) already rebuilt, %d remaining.",
+                        file, journal.doneCount(), indexes.size());
+            }
 
-            // skip until resume index
-            if (StringUtils.isNotBlank(lastIndexName)) {
-                // skip until its found
-                if (!lastIndexName.equals(index.getName())) {
-                    continue;
+            int failed = 0;
+            if (parallelism <= 1) {
+                for (final IndexData index : indexes) {
+                    journal.started(index);
+                    if (indexManager.createAndMonitor(ver, index, true)) {
+                        journal.done(index);
+                    } else {
+                        failed++;
+                    }
                 }
-                // we found it, so set this to null
-                lastIndexName = null;
-                println("Resuming from index: %s", index.getName());
+            } else {
+                // every index has the same weight, only the parallelism limits the rebuild
+                final Consumer<IndexData> build =
+                        index -> {
+                            journal.started(index);
+                            indexManager.dropIndex(index);
+                            indexManager.createAndAwait(ver, index);
+                            journal.done(index);
+                        };
+                final var sizes =
+                        indexes.stream().map(idx -> Pair.of(idx, 1L)).collect(Collectors.toList());
+                final var guard = indexManager.newGuard(DEFAULT_MAX_HEAP, DEFAULT_MAX_GC);
+                final var scheduler = new IndexScheduler(build, parallelism, Long.MAX_VALUE, guard);
+                failed = scheduler.run(sizes);
+            }
+            if (failed > 0) {
+                println("%d index(es) failed, run again to resume from %s", failed, file);
+                return;
             }
+        }
+        journal.delete();
+        println("All indexes rebuilt.");
+    }
 
-            // save resume file
-            Files.writeString(file.toPath(), index.getName());
-            indexManager.createAndMonitor(ver, index, true);
+    /**
+     * Indexes still to rebuild, the ones in progress when the last run stopped are included even
+     * if they were dropped and never created.
+     */
+    static List<IndexData> remaining(List<IndexData> dbIndexes, IndexJournal journal) {
+        final Map<String, IndexData> ret = new LinkedHashMap<>();
+        for (IndexData index : journal.inProgress()) {
+            ret.put(index.getName(), index);
+        }
+        for (IndexData index : dbIndexes) {
+            if (!journal.isDone(index.getName())) {
+                ret.putIfAbsent(index.getName(), index);
+            }
         }
-        println("Last index saved to %s", this.file);
+        return new ArrayList<>(ret.values());
     }
 }
@@ -0,0 +1,193 @@
+/*
+ * Copyright 2002 Brinqa, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neo4j.tool;
+
+import static java.lang.System.currentTimeMillis;
+import static org.neo4j.tool.util.Print.println;
+
+import com.brinqa.storage.MappingFile;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import picocli.CommandLine;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+import picocli.CommandLine.Parameters;
+
+/** Translates IDs kept outside the database with the mapping exported by a copy. */
+@Command(
+        name = "remap",
+        version = "remap 1.0",
+        description =
+                "Translates source node IDs to target node IDs with a mapping file written by 'copy --export-mapping'.")
+public class RemapIds implements Runnable {
+
+    static final int BATCH = 64 * 1024;
+
+    public enum Format {
+        /** One decimal ID per line. */
+        TEXT,
+        /** Big endian 8 byte IDs. */
+        BINARY
+    }
+
+    @Parameters(index = "0", description = "Mapping file exported by the copy.")
+    private File mappingFile;
+
+    @Parameters(index = "1", description = "File of source node IDs.")
+    private File inputFile;
+
+    @Parameters(index = "2", description = "File the target node IDs are written to.")
+    private File outputFile;
+
+    @Option(
+            names = {"-f", "--format"},
+            description = "Format of the ID files, one of ${COMPLETION-CANDIDATES}.",
+            defaultValue = "TEXT")
+    private Format format = Format.TEXT;
+
+    @Option(
+            names = {"--skipUnmapped"},
+            description =
+                    "Leave out IDs without a target, by default they're written as -1 so the lines still match the input.")
+    private boolean skipUnmapped;
+
+    @Option(
+            names = {"--skipVerify"},
+            description = "Don't compare the mapping with its checksums before translating.")
+    private boolean skipVerify;
+
+    public static void main(String... args) {
+        int exitCode = new CommandLine(new RemapIds()).execute(args);
+        System.exit(exitCode);
+    }
+
+    @Override
+    public void run() {
+        if (!inputFile.isFile()) {
+            throw new IllegalArgumentException("Input file does not exist: " + inputFile);
+        }
+        final long start = currentTimeMillis();
+        try (final var mapping = MappingFile.open(mappingFile)) {
+            println(
+                    "Mapping of %,d node(s) from %d to %d%s",
+                    mapping.size(),
+                    mapping.firstKey(),
+                    mapping.lastKey(),
+                    mapping.isDense() ? ", dense" : "");
+            if (!skipVerify) {
+                mapping.verify();
+            }
+            final long[] counts =
+                    Format.TEXT == format ? remapText(mapping) : remapBinary(mapping);
+            final long time = Math.max(1, currentTimeMillis() - start);
+            println(
+                    "Translated %,d ID(s), %,d without a target, in %d ms (%,d IDs/s).",
+                    counts[0], counts[1], time, counts[0] * 1000 / time);
+        } catch (IOException ioe) {
+            throw new IllegalStateException(ioe);
+        }
+    }
+
+    /** @return IDs read and IDs that weren't mapped */
+    long[] remapText(MappingFile mapping) throws IOException {
+        final long[] counts = new long[2];
+        final long[] batch = new long[BATCH];
+        try (final var rdr = new BufferedReader(new FileReader(inputFile));
+                final var wrt = new BufferedWriter(new FileWriter(outputFile))) {
+            int n = 0;
+            long line = 0;
+            String text;
+            while (null != (text = rdr.readLine())) {
+                line++;
+                text = text.trim();
+                if (text.isEmpty()) {
+                    continue;
+                }
+                try {
+                    batch[n++] = Long.parseLong(text);
+                } catch (NumberFormatException nfe) {
+                    final var FMT = "Invalid ID on line %d of %s: %s";
+                    throw new IllegalArgumentException(String.format(FMT, line, inputFile, text));
+                }
+                if (n == BATCH) {
+                    writeText(wrt, batch, n, mapping, counts);
+                    n = 0;
+                }
+            }
+            writeText(wrt, batch, n, mapping, counts);
+        }
+        return counts;
+    }
+
+    void writeText(BufferedWriter wrt, long[] batch, int n, MappingFile mapping, long[] counts)
+            throws IOException {
+        counts[0] += n;
+        counts[1] += mapping.remap(batch, n);
+        for (int i = 0; i < n; i++) {
+            if (skipUnmapped && MappingFile.MISSING == batch[i]) {
+                continue;
+            }
+            wrt.write(Long.toString(batch[i]));
+            wrt.newLine();
+        }
+    }
+
+    long[] remapBinary(MappingFile mapping) throws IOException {
+        if (inputFile.length() % Long.BYTES != 0) {
+            throw new IllegalArgumentException("Input is not a file of 8 byte IDs: " + inputFile);
+        }
+        final long[] counts = new long[2];
+        final long[] batch = new long[BATCH];
+        try (final var in =
+                        new DataInputStream(
+                                new BufferedInputStream(new FileInputStream(inputFile)));
+                final var out =
+                        new DataOutputStream(
+                                new BufferedOutputStream(new FileOutputStream(outputFile)))) {
+            boolean eof = false;
+            while (!eof) {
+                int n = 0;
+                try {
+                    while (n < BATCH) {
+                        batch[n] = in.readLong();
+                        n++;
+                    }
+                } catch (EOFException e) {
+                    eof = true;
+                }
+                counts[0] += n;
+                counts[1] += mapping.remap(batch, n);
+                for (int i = 0; i < n; i++) {
+                    if (!skipUnmapped || MappingFile.MISSING != batch[i]) {
+                        out.writeLong(batch[i]);
+                    }
+                }
+            }
+        }
+        return counts;
+    }
+}
@@ -17,6 +17,7 @@ package org.neo4j.tool;
 
 import static org.neo4j.configuration.GraphDatabaseSettings.allow_upgrade;
 import static org.neo4j.configuration.GraphDatabaseSettings.data_directory;
+import static org.neo4j.configuration.GraphDatabaseSettings.default_schema_provider;
 import static org.neo4j.configuration.GraphDatabaseSettings.pagecache_memory;
 import static org.neo4j.configuration.GraphDatabaseSettings.read_only_databases;
 import static org.neo4j.configuration.GraphDatabaseSettings.writable_databases;
@@ -24,17 +25,37 @@ import static org.neo4j.tool.util.Neo4jHelper.newBatchInserter;
 import static org.neo4j.tool.util.Neo4jHelper.shutdown;
 import static org.neo4j.tool.util.Print.println;
 
-import com.brinqa.storage.Long2LongStore;
+import com.brinqa.storage.Long2LongMapping;
+import com.brinqa.storage.MappingFile;
+import com.brinqa.storage.OffHeapBitmap;
+import com.brinqa.storage.TieredLong2LongStore;
+import com.google.common.hash.Hashing;
 import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
 import org.neo4j.batchinsert.BatchInserter;
 import org.neo4j.configuration.Config;
+import org.neo4j.io.ByteUnit;
+import org.neo4j.io.layout.DatabaseLayout;
+import org.neo4j.tool.copy.CopyTransform;
+import org.neo4j.tool.copy.ImportCopyJob;
+import org.neo4j.tool.copy.IncrementalState;
 import org.neo4j.tool.copy.NodeCopyJob;
+import org.neo4j.tool.copy.PredicateBuilder;
 import org.neo4j.tool.copy.RelationshipCopyJob;
+import org.neo4j.tool.copy.ShardPartitioner;
+import org.neo4j.tool.copy.ShardedCopyJob;
+import org.neo4j.tool.copy.StorePrefetcher;
+import org.neo4j.tool.copy.SubgraphExtractor;
+import org.neo4j.tool.index.DeferredSchema;
 import org.neo4j.tool.util.Neo4jHelper;
 import org.neo4j.tool.util.Neo4jHelper.HighestInfo;
 import picocli.CommandLine;
@@ -50,6 +71,22 @@ import picocli.CommandLine.Parameters;
                 "Copies the source database to the target database, while optimizing size and consistency")
 public class StoreCopy implements Runnable {
 
+    public enum Engine {
+        /** Single threaded, writes through a {@link BatchInserter}. */
+        INSERTER,
+        /** Parallel, writes an empty target with Neo4j's batch importer. */
+        IMPORTER
+    }
+
+    public enum RelationshipMode {
+        /** Traverse if the share of nodes kept is under the traversal ratio, scan otherwise. */
+        AUTO,
+        /** Read every relationship record of the source in ID order. */
+        SCAN,
+        /** Walk the relationships of the copied nodes only. */
+        TRAVERSE
+    }
+
     // assumption different data directories
     @Parameters(index = "0", description = "Source directory for the data files.")
     private File sourceDataDirectory;
@@ -80,6 +117,178 @@ public class StoreCopy implements Runnable {
             description = "Delete nodes with label.")
     private Set<String> deleteNodesWithLabel;
 
+    @Option(
+            names = {"-rt", "--deleteRelationshipsWithType"},
+            description = "Delete relationships with type.")
+    private Set<String> deleteRelationshipsWithType;
+
+    @Option(
+            names = {"-rs", "--relationshipScriptFile"},
+            description =
+                    "Groovy script file that provides acceptance criteria for a relationship to be copied.")
+    private File relationshipScript;
+
+    @Option(
+            names = {"-dl", "--dropLabel"},
+            description = "Remove the label from copied nodes.")
+    private Set<String> dropLabels;
+
+    @Option(
+            names = {"-dp", "--dropProperty"},
+            description =
+                    "Remove node properties while copying, as [Label:]name where the name may use '*' and '?' wildcards.")
+    private Set<String> dropProperties;
+
+    @Option(
+            names = {"-drp", "--dropRelationshipProperty"},
+            description =
+                    "Remove relationship properties while copying, as [TYPE:]name where the name may use '*' and '?' wildcards.")
+    private Set<String> dropRelationshipProperties;
+
+    @Option(
+            names = {"--mappingMemory"},
+            description =
+                    "Heap budget in MB for the node ID mapping before it spills to disk, a quarter of the heap by default. Incremental copies always keep the mapping on disk.",
+            defaultValue = "0")
+    private int mappingMemory = 0;
+
+    @Option(
+            names = {"--prefetchDistance"},
+            description =
+                    "Number of records to read the source store files ahead of the copy, 0 disables the prefetch.",
+            defaultValue = "0")
+    private long prefetchDistance = 0;
+
+    @Option(
+            names = {"--relationshipMode"},
+            description =
+                    "How relationships are found, one of ${COMPLETION-CANDIDATES}. Incremental copies always scan.",
+            defaultValue = "AUTO")
+    private RelationshipMode relationshipMode = RelationshipMode.AUTO;
+
+    @Option(
+            names = {"--traversalRatio"},
+            description =
+                    "Share of the source nodes kept under which AUTO traverses the copied nodes rather than scanning every relationship.",
+            defaultValue = "0.1")
+    private double traversalRatio = 0.1;
+
+    @Option(
+            names = {"--seedLabel"},
+            description =
+                    "Extract a subgraph around the nodes with the label, rather than copying every accepted node.")
+    private Set<String> seedLabels;
+
+    @Option(
+            names = {"--seedProperty"},
+            description =
+                    "Extract a subgraph around the nodes with the property value, as name=value.")
+    private Map<String, String> seedProperties;
+
+    @Option(
+            names = {"--seedIds"},
+            description =
+                    "Extract a subgraph around the nodes listed in the file, one ID per line.")
+    private File seedIds;
+
+    @Option(
+            names = {"--hops"},
+            description = "Number of hops from the seed nodes the subgraph extends to.",
+            defaultValue = "2")
+    private int hops = 2;
+
+    @Option(
+            names = {"--followType"},
+            description = "Relationship type the subgraph extends along, all types by default.")
+    private Set<String> followTypes;
+
+    @Option(
+            names = {"--maxDegree"},
+            description =
+                    "Nodes with more relationships are kept in the subgraph but not extended from.",
+            defaultValue = "1000")
+    private int maxDegree = 1_000;
+
+    @Option(
+            names = {"--maxNodes"},
+            description = "Stop extending the subgraph at this many nodes, 0 for no limit.",
+            defaultValue = "0")
+    private long maxNodes = 0;
+
+    @Option(
+            names = {"-e", "--engine"},
+            description = "Target engine, one of ${COMPLETION-CANDIDATES}.",
+            defaultValue = "INSERTER")
+    private Engine engine = Engine.INSERTER;
+
+    @Option(
+            names = {"--schema"},
+            description =
+                    "Index dump file, the indexes and constraints are populated on the target when the copy completes.")
+    private File schemaFile;
+
+    @Option(
+            names = {"-i", "--incremental"},
+            description =
+                    "State directory for incremental copies, only source ranges changed since the last run are copied into the existing target.")
+    private File incrementalDirectory;
+
+    @Option(
+            names = {"--export-mapping"},
+            description =
+                    "File the source to target node ID mapping is written to, for the 'remap' command.")
+    private File exportMapping;
+
+    @Option(
+            names = {"--shardByLabel"},
+            split = ",",
+            description =
+                    "Split the copy into a target per label, a node goes to the shard of the first label it has.")
+    private List<String> shardLabels;
+
+    @Option(
+            names = {"--shardByProperty"},
+            description =
+                    "Split the copy by a hash of the node property into --shardCount targets.")
+    private String shardProperty;
+
+    @Option(
+            names = {"--shardScript"},
+            description =
+                    "Groovy script file returning the shard of a node, from 0 to --shardCount - 1. Nodes without a shard aren't copied.")
+    private File shardScript;
+
+    @Option(
+            names = {"--shardCount"},
+            description = "Number of targets for --shardByProperty and --shardScript.",
+            defaultValue = "0")
+    private int shardCount = 0;
+
+    @Option(
+            names = {"--shardPageCache"},
+            description =
+                    "Page cache in MB of each shard target, by default the target's page cache split between the shards.",
+            defaultValue = "0")
+    private long shardPageCache = 0;
+
+    @Option(
+            names = {"--crossShardReport"},
+            description =
+                    "CSV file the relationships between nodes of different shards are written to.")
+    private File crossShardReport;
+
+    boolean extracting() {
+        return null != seedLabels && !seedLabels.isEmpty()
+                || null != seedProperties && !seedProperties.isEmpty()
+                || null != seedIds;
+    }
+
+    boolean sharding() {
+        return null != shardLabels && !shardLabels.isEmpty()
+                || null != shardProperty
+                || null != shardScript;
+    }
+
     // this example implements Callable, so parsing, error handling and handling user
     // requests for usage help or version help can be done with one line of code.
     public static void main(String... args) {
@@ -89,9 +298,11 @@ public class StoreCopy implements Runnable {
 
     @Override
     public void run() {
-        try (final var job = new StoreCopyJob()) {
+        final var job = new StoreCopyJob();
+        try (job) {
             job.run();
         }
+        job.deleteRecords();
     }
 
     class StoreCopyJob implements Runnable, Closeable {
@@ -99,7 +310,14 @@ public class StoreCopy implements Runnable {
         private final HighestInfo highestInfo;
         private final BatchInserter sourceDb;
         private final BatchInserter targetDb;
+        private final List<BatchInserter> shardDbs = new ArrayList<>();
+        private final Config targetConfig;
         private final String acceptanceScript;
+        private final String relationshipAcceptanceScript;
+        private final CopyTransform transform;
+        private final IncrementalState incremental;
+        private final StorePrefetcher prefetcher;
+        private OffHeapBitmap subgraph;
 
         public StoreCopyJob() {
             // check source directory
@@ -126,7 +344,7 @@ public class StoreCopy implements Runnable {
             final var sourceConfig = sourceCfgBld.build();
 
             // change the target directory for the data
-            final var targetConfig =
+            this.targetConfig =
                     Config.newBuilder()
                             .fromConfig(sourceConfig)
                             .set(read_only_databases, Set.of())
@@ -139,6 +357,65 @@ public class StoreCopy implements Runnable {
             if (deleteNodesWithLabel != null && !deleteNodesWithLabel.isEmpty()) {
                 println("Delete Nodes with Label(s): " + deleteNodesWithLabel);
             }
+            this.transform =
+                    new CopyTransform(
+                            orEmpty(dropLabels),
+                            orEmpty(dropProperties),
+                            orEmpty(dropRelationshipProperties));
+            if (!transform.isEmpty()) {
+                println("Drop Label(s): %s", orEmpty(dropLabels));
+                println("Drop Node Properties: %s", orEmpty(dropProperties));
+                println("Drop Relationship Properties: %s", orEmpty(dropRelationshipProperties));
+            }
+
+            if (deleteRelationshipsWithType != null && !deleteRelationshipsWithType.isEmpty()) {
+                println("Delete Relationships with Type(s): " + deleteRelationshipsWithType);
+            }
+
+            this.acceptanceScript = readScript(script);
+            this.relationshipAcceptanceScript = readScript(relationshipScript);
+
+            if (null != schemaFile && !schemaFile.isFile()) {
+                throw new IllegalArgumentException("Schema file does not exist: " + schemaFile);
+            }
+            if (extracting() && (Engine.IMPORTER == engine || null != incrementalDirectory)) {
+                throw new IllegalArgumentException(
+                        "Subgraph extraction requires a full copy with the inserter engine.");
+            }
+            if (null != seedIds && !seedIds.isFile()) {
+                throw new IllegalArgumentException("Seed ID file does not exist: " + seedIds);
+            }
+            if (sharding()) {
+                checkSharding();
+            }
+            if (RelationshipMode.TRAVERSE == relationshipMode && null != incrementalDirectory) {
+                throw new IllegalArgumentException(
+                        "Incremental copies fingerprint relationship ranges, they can't traverse.");
+            }
+            if (Engine.IMPORTER == engine && null != incrementalDirectory) {
+                throw new IllegalArgumentException(
+                        "Incremental copies require the inserter engine, the importer only writes empty targets.");
+            }
+
+            // state of the last copy, if an incremental copy was requested
+            if (IncrementalState.exists(incrementalDirectory)) {
+                final var layout = DatabaseLayout.of(targetConfig);
+                if (!Files.isDirectory(layout.databaseDirectory())) {
+                    final var FMT = "Incremental copy requires the last target: %s";
+                    throw new IllegalArgumentException(String.format(FMT, targetDataDirectory));
+                }
+                println("Incremental copy using state: %s", incrementalDirectory);
+            } else if (null != incrementalDirectory
+                    && !IncrementalState.interrupted(incrementalDirectory)) {
+                // without state every record is copied, into an existing target it'd be twice
+                final var layout = DatabaseLayout.of(targetConfig);
+                if (hasFiles(layout.databaseDirectory())) {
+                    final var FMT = "No incremental state in '%s', the target must be empty: %s";
+                    final var msg =
+                            String.format(FMT, incrementalDirectory, layout.databaseDirectory());
+                    throw new IllegalArgumentException(msg);
+                }
+            }
 
             println("Copying from %s to %s", srcPath, targetDataDirectory);
 
@@ -152,43 +429,369 @@ public class StoreCopy implements Runnable {
 
             // create inserters
             this.sourceDb = newBatchInserter(sourceConfig);
-            this.targetDb = newBatchInserter(targetConfig);
+            // each shard has its own target
+            final boolean single = Engine.INSERTER == engine && !sharding();
+            this.targetDb = single ? newBatchInserter(targetConfig) : null;
+            if (sharding()) {
+                for (File dir : shardDirectories()) {
+                    final var FMT = "Shard %d: %s (%d MB page cache)";
+                    println(FMT, shardDbs.size(), dir, shardPageCache());
+                    shardDbs.add(newBatchInserter(shardConfig(dir)));
+                }
+            }
+            this.prefetcher =
+                    Engine.INSERTER == engine && prefetchDistance > 0
+                            ? new StorePrefetcher(sourceConfig, prefetchDistance)
+                            : null;
+
+            // opened last, so nothing left to fail can leave the state behind
+            IncrementalState state = null;
+            try {
+                if (null != incrementalDirectory) {
+                    state = new IncrementalState(incrementalDirectory, settings());
+                }
+            } catch (RuntimeException e) {
+                close();
+                throw e;
+            }
+            this.incremental = state;
+        }
+
+        void checkSharding() {
+            if ((null != shardLabels ? 1 : 0)
+                            + (null != shardProperty ? 1 : 0)
+                            + (null != shardScript ? 1 : 0)
+                    > 1) {
+                throw new IllegalArgumentException(
+                        "Use one of --shardByLabel, --shardByProperty and --shardScript.");
+            }
+            if (Engine.IMPORTER == engine || null != incrementalDirectory || extracting()) {
+                throw new IllegalArgumentException(
+                        "Sharding requires a full copy with the inserter engine.");
+            }
+            if (null == shardLabels && shardCount < 1) {
+                throw new IllegalArgumentException("Sharding requires a --shardCount above 0.");
+            }
+            if (shards() > ShardedCopyJob.MAX_SHARDS) {
+                final var msg = "Sharding supports up to %d targets.";
+                throw new IllegalArgumentException(String.format(msg, ShardedCopyJob.MAX_SHARDS));
+            }
+            if (null != shardScript && !shardScript.isFile()) {
+                throw new IllegalArgumentException("Shard script does not exist: " + shardScript);
+            }
+        }
+
+        int shards() {
+            return null != shardLabels ? shardLabels.size() : shardCount;
+        }
+
+        /** A data directory per shard, under the target data directory. */
+        List<File> shardDirectories() {
+            final List<File> ret = new ArrayList<>();
+            for (int shard = 0; shard < shards(); shard++) {
+                final var dir = new File(targetDataDirectory, "shard-" + shard);
+                if (!dir.isDirectory() && !dir.mkdirs()) {
+                    throw new IllegalArgumentException(
+                            "Unable to create directory for shard: " + dir);
+                }
+                ret.add(dir);
+            }
+            return ret;
+        }
+
+        Config shardConfig(File dir) {
+            return Config.newBuilder()
+                    .fromConfig(targetConfig)
+                    .set(data_directory, dir.toPath())
+                    .set(pagecache_memory, shardPageCache() + "m")
+                    .build();
+        }
+
+        /** Page cache in MB of a shard, every shard has an inserter open at once. */
+        long shardPageCache() {
+            if (shardPageCache > 0) {
+                return shardPageCache;
+            }
+            // an unset page cache would size each shard from the free memory
+            final var total = targetConfig.get(pagecache_memory);
+            final long bytes = null == total ? ByteUnit.gibiBytes(4) : ByteUnit.parse(total);
+            return Math.max(32, bytes / shards() / ByteUnit.mebiBytes(1));
+        }
+
+        boolean hasFiles(Path dir) {
+            if (!Files.isDirectory(dir)) {
+                return false;
+            }
+            try (final var files = Files.list(dir)) {
+                return files.findAny().isPresent();
+            } catch (IOException ioe) {
+                throw new IllegalStateException(ioe);
+            }
+        }
 
+        String readScript(File file) {
             try {
-                this.acceptanceScript = script != null ? Files.readString(script.toPath()) : null;
+                return file != null ? Files.readString(file.toPath()) : null;
             } catch (IOException e) {
                 throw new IllegalArgumentException(e);
             }
         }
 
+        /** Options that change which records are copied, must match between incremental runs. */
+        String settings() {
+            final var hasher = Hashing.sha256().newHasher();
+            hasher.putUnencodedChars(Objects.toString(acceptanceScript, ""));
+            hasher.putUnencodedChars(Objects.toString(relationshipAcceptanceScript, ""));
+            for (Set<String> option :
+                    List.of(
+                            orEmpty(deleteNodesWithLabel),
+                            orEmpty(deleteRelationshipsWithType),
+                            orEmpty(dropLabels),
+                            orEmpty(dropProperties),
+                            orEmpty(dropRelationshipProperties))) {
+                option.stream().sorted().forEach(hasher::putUnencodedChars);
+                hasher.putInt(option.size());
+            }
+            return hasher.hash().toString();
+        }
+
+        Set<String> orEmpty(Set<String> option) {
+            return Optional.ofNullable(option).orElse(Set.of());
+        }
+
         @Override
         public void run() {
             // copy nodes from source to target
             final var deletionLabels = Optional.ofNullable(deleteNodesWithLabel).orElse(Set.of());
+            if (Engine.IMPORTER == engine) {
+                final var importCopyJob =
+                        new ImportCopyJob(
+                                highestInfo.getNodeId(),
+                                highestInfo.getRelationshipId(),
+                                sourceDb,
+                                targetConfig,
+                                acceptanceScript,
+                                deletionLabels,
+                                orEmpty(deleteRelationshipsWithType),
+                                relationshipAcceptanceScript,
+                                transform);
+                try (final var store = new TieredLong2LongStore(mappingBudget())) {
+                    importCopyJob.process(store);
+                    exportMapping(store, exportMapping);
+                }
+                if (null != schemaFile) {
+                    final var target = newBatchInserter(targetConfig);
+                    applySchema(target);
+                    shutdown(target, "target");
+                }
+                return;
+            }
+            if (sharding()) {
+                copyShards(deletionLabels);
+                return;
+            }
+            this.subgraph = extractSubgraph();
+            if (null != incremental) {
+                incremental.start();
+            }
             final var nodeCopyJob =
                     new NodeCopyJob(
                             highestInfo.getNodeId(),
                             sourceDb,
                             targetDb,
                             acceptanceScript,
-                            deletionLabels);
+                            deletionLabels,
+                            transform,
+                            incremental,
+                            prefetcher,
+                            null == subgraph ? null : subgraph::get,
+                            null,
+                            null,
+                            null);
 
-            try (final var store = new Long2LongStore()) {
-                nodeCopyJob.process(store);
+            try (final var store = newStore()) {
+                final double kept = nodeCopyJob.process(store);
+                exportMapping(store, exportMapping);
 
                 // copy relationships from source to target
                 final var relationshipCopyJob =
                         new RelationshipCopyJob(
-                                highestInfo.getRelationshipId(), sourceDb, targetDb);
-                relationshipCopyJob.process(store);
+                                highestInfo.getRelationshipId(),
+                                sourceDb,
+                                targetDb,
+                                orEmpty(deleteRelationshipsWithType),
+                                relationshipAcceptanceScript,
+                                transform,
+                                incremental,
+                                prefetcher);
+                if (traverse(kept)) {
+                    relationshipCopyJob.traverse(store, highestInfo.getNodeId());
+                } else {
+                    relationshipCopyJob.process(store);
+                }
+            }
+            if (null != schemaFile) {
+                applySchema(targetDb);
+            }
+        }
+
+        /** Copy into every shard in one pass over the source, each shard with its own mapping. */
+        void copyShards(Set<String> deletionLabels) {
+            final List<TieredLong2LongStore> stores = new ArrayList<>();
+            // the script class belongs to the builder, it's kept open for the copy
+            try (PredicateBuilder builder = new PredicateBuilder()) {
+                final var partitioner = newPartitioner(builder);
+                println("Sharding the copy into %d target(s)", partitioner.shards());
+                final long budget = mappingBudget() / partitioner.shards();
+                for (int shard = 0; shard < partitioner.shards(); shard++) {
+                    stores.add(new TieredLong2LongStore(budget));
+                }
+                new ShardedCopyJob(
+                                highestInfo.getNodeId(),
+                                highestInfo.getRelationshipId(),
+                                sourceDb,
+                                shardDbs,
+                                acceptanceScript,
+                                deletionLabels,
+                                orEmpty(deleteRelationshipsWithType),
+                                relationshipAcceptanceScript,
+                                transform,
+                                prefetcher,
+                                partitioner,
+                                crossShardReport)
+                        .process(stores);
+                if (null != exportMapping) {
+                    for (int shard = 0; shard < stores.size(); shard++) {
+                        final var file = new File(exportMapping.getPath() + "." + shard);
+                        exportMapping(stores.get(shard), file);
+                    }
+                }
+            } finally {
+                stores.forEach(TieredLong2LongStore::close);
+            }
+            if (null != schemaFile) {
+                final var provider = targetConfig.get(default_schema_provider);
+                new DeferredSchema(provider).apply(shardDbs, schemaFile);
+            }
+        }
+
+        ShardPartitioner newPartitioner(PredicateBuilder builder) {
+            if (null != shardLabels) {
+                return ShardPartitioner.byLabel(shardLabels);
+            }
+            if (null != shardProperty) {
+                return ShardPartitioner.byProperty(shardProperty, shardCount);
+            }
+            final var script = builder.newShardInstance(readScript(shardScript));
+            return ShardPartitioner.byScript(script, shardCount);
+        }
+
+        /** Nodes within the hops of the seeds, null if no seeds were given. */
+        OffHeapBitmap extractSubgraph() {
+            if (!extracting()) {
+                return null;
             }
+            println("Extracting a subgraph of %d hop(s) around the seed nodes", hops);
+            return SubgraphExtractor.builder()
+                    .sourceDb(sourceDb)
+                    .highestNodeId(highestInfo.getNodeId())
+                    .seedLabels(orEmpty(seedLabels))
+                    .seedProperties(null == seedProperties ? Map.of() : seedProperties)
+                    .seedIds(seedIds)
+                    .hops(hops)
+                    .relationshipTypes(orEmpty(followTypes))
+                    .maxDegree(maxDegree)
+                    .maxNodes(maxNodes)
+                    .build()
+                    .extract();
+        }
+
+        /** Traversing reads random records, it only pays off when few nodes are kept. */
+        boolean traverse(double kept) {
+            final boolean traverse =
+                    null == incremental
+                            && (RelationshipMode.TRAVERSE == relationshipMode
+                                    || (RelationshipMode.AUTO == relationshipMode
+                                            && kept < traversalRatio));
+            println(
+                    "Kept %.1f%% of the nodes, relationships are copied by %s",
+                    100 * kept, traverse ? "traversing the copied nodes" : "scanning the store");
+            return traverse;
+        }
+
+        /** Register the deferred schema, populated as the inserter shuts down. */
+        void applySchema(BatchInserter db) {
+            final var provider = targetConfig.get(default_schema_provider);
+            new DeferredSchema(provider).apply(db, schemaFile);
+        }
+
+        Long2LongMapping newStore() {
+            return null == incremental
+                    ? new TieredLong2LongStore(mappingBudget())
+                    : incremental.getNodes();
+        }
+
+        /** Write the node mapping in source ID order, so the file comes out sorted. */
+        void exportMapping(Long2LongMapping store, File file) {
+            if (null == file) {
+                return;
+            }
+            final long start = System.currentTimeMillis();
+            try (final var writer = MappingFile.writer(file)) {
+                for (long id = 0; id <= highestInfo.getNodeId(); id++) {
+                    final Long target = store.get(id);
+                    if (null != target) {
+                        writer.add(id, target);
+                    }
+                }
+                println(
+                        "Exported the mapping of %,d node(s) to %s in %d ms",
+                        writer.size(),
+                        file,
+                        System.currentTimeMillis() - start);
+            }
+        }
+
+        /** Bytes the node mapping keeps in memory before it spills to disk. */
+        long mappingBudget() {
+            return mappingMemory > 0
+                    ? mappingMemory * 1024L * 1024L
+                    : Runtime.getRuntime().maxMemory() / 4;
+        }
+
+        /** Remove target records that no longer exist in the source, then save the state. */
+        void deleteRecords() {
+            if (null == incremental) {
+                return;
+            }
+            Neo4jHelper.deleteRecords(
+                    targetConfig,
+                    targetDataDirectory,
+                    databaseName,
+                    incremental.getDeletedNodes(),
+                    incremental.getDeletedRelationships());
+            incremental.save();
         }
 
         @Override
         public void close() {
             // shutdown the batch inserter
-            shutdown(targetDb, "target");
+            if (null != targetDb) {
+                shutdown(targetDb, "target");
+            }
+            for (int shard = 0; shard < shardDbs.size(); shard++) {
+                shutdown(shardDbs.get(shard), "shard " + shard);
+            }
             shutdown(sourceDb, "source");
+            if (null != subgraph) {
+                subgraph.close();
+            }
+            if (null != prefetcher) {
+                prefetcher.close();
+            }
+            if (null != incremental) {
+                incremental.close();
+            }
         }
     }
 }
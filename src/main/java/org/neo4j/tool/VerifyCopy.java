@@ -0,0 +1,231 @@
+/*
+ * Copyright 2002 Brinqa, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neo4j.tool;
+
+import static java.lang.System.currentTimeMillis;
+import static org.neo4j.configuration.GraphDatabaseSettings.data_directory;
+import static org.neo4j.tool.util.Print.println;
+
+import com.brinqa.storage.Long2LongStore;
+import com.brinqa.storage.MappingFile;
+import java.io.File;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.function.LongFunction;
+import org.neo4j.configuration.Config;
+import org.neo4j.dbms.api.DatabaseManagementService;
+import org.neo4j.tool.copy.CopyTransform;
+import org.neo4j.tool.copy.IncrementalState;
+import org.neo4j.tool.util.Neo4jHelper;
+import org.neo4j.tool.verify.CopyVerifier;
+import org.neo4j.tool.verify.VerifyReport;
+import picocli.CommandLine;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+import picocli.CommandLine.Parameters;
+
+/**
+ * Verifies a copy before the directories are swapped, in minutes rather than the hours of a full
+ * consistency check.
+ */
+@Command(
+        name = "verify",
+        version = "verify 1.0",
+        description =
+                "Compares the target of a copy with its source, by counts and sampled records.")
+public class VerifyCopy implements Runnable {
+
+    @Parameters(index = "0", description = "Source directory for the data files.")
+    private File sourceDataDirectory;
+
+    @Parameters(index = "1", description = "Target directory for data files.")
+    private File targetDataDirectory;
+
+    @Option(
+            names = {"-db", "--databaseName"},
+            description = "Name of the database.",
+            defaultValue = "neo4j")
+    private String databaseName = "neo4j";
+
+    @Option(
+            names = {"-cfg", "--neo4jConf"},
+            description = "Source 'neo4j.conf' file location.")
+    private File sourceConfigurationFile;
+
+    @Option(
+            names = {"-m", "--mapping"},
+            description =
+                    "State directory of an incremental copy, or a node mapping file written by"
+                            + " --export-mapping, used to compare sampled records.")
+    private File mapping;
+
+    @Option(
+            names = {"--samples"},
+            description = "Number of mapped nodes, and of relationships, to compare.",
+            defaultValue = "100000")
+    private int samples = 100_000;
+
+    @Option(
+            names = {"-t", "--timeBudget"},
+            description = "Time budget in seconds, sampling stops when it's used up.",
+            defaultValue = "300")
+    private int timeBudget = 300;
+
+    @Option(
+            names = {"--threads"},
+            description = "Number of threads used to sample, defaults to the available processors.")
+    private int threads = Runtime.getRuntime().availableProcessors();
+
+    @Option(
+            names = {"-dl", "--dropLabel"},
+            description = "Label removed by the copy.")
+    private Set<String> dropLabels;
+
+    @Option(
+            names = {"-dp", "--dropProperty"},
+            description = "Node property rule used by the copy, as [Label:]name.")
+    private Set<String> dropProperties;
+
+    @Option(
+            names = {"-drp", "--dropRelationshipProperty"},
+            description = "Relationship property rule used by the copy, as [TYPE:]name.")
+    private Set<String> dropRelationshipProperties;
+
+    public static void main(String... args) {
+        int exitCode = new CommandLine(new VerifyCopy()).execute(args);
+        System.exit(exitCode);
+    }
+
+    @Override
+    public void run() {
+        final long deadline = currentTimeMillis() + timeBudget * 1000L;
+        final var config = sourceConfig();
+        if (null != mapping && !mapping.isFile() && !IncrementalState.exists(mapping)) {
+            throw new IllegalArgumentException("Mapping is not from a completed copy: " + mapping);
+        }
+
+        // avoid nasty warning
+        org.neo4j.internal.unsafe.IllegalAccessLoggerSuppressor.suppress();
+
+        final var executor = Executors.newFixedThreadPool(Math.max(2, threads));
+        DatabaseManagementService source = null;
+        DatabaseManagementService target = null;
+        Long2LongStore nodes = null;
+        Long2LongStore relationships = null;
+        MappingFile mappingFile = null;
+        try {
+            // recovery can take a while, so both are opened at once
+            final var sourceService =
+                    CompletableFuture.supplyAsync(
+                            () -> open(config, sourceDataDirectory), executor);
+            final var targetService =
+                    CompletableFuture.supplyAsync(
+                            () -> open(config, targetDataDirectory), executor);
+            source = sourceService.join();
+            target = targetService.join();
+
+            LongFunction<Long> nodeMapping = null;
+            LongFunction<Long> relationshipMapping = null;
+            if (null != mapping && mapping.isFile()) {
+                mappingFile = MappingFile.open(mapping);
+                nodeMapping = lookup(mappingFile);
+            } else if (null != mapping) {
+                nodes = openMapping(IncrementalState.nodesDirectory(mapping));
+                relationships = openMapping(IncrementalState.relationshipsDirectory(mapping));
+                nodeMapping = null == nodes ? null : nodes::get;
+                relationshipMapping = null == relationships ? null : relationships::get;
+            }
+
+            final var sourceDb = source.database(databaseName);
+            final var verifier =
+                    new CopyVerifier(
+                            sourceDb,
+                            target.database(databaseName),
+                            Neo4jHelper.highestInfo(sourceDb),
+                            nodeMapping,
+                            relationshipMapping,
+                            orEmpty(dropLabels),
+                            () ->
+                                    new CopyTransform(
+                                            orEmpty(dropLabels),
+                                            orEmpty(dropProperties),
+                                            orEmpty(dropRelationshipProperties)),
+                            executor,
+                            Math.max(1, threads),
+                            deadline);
+            final long start = currentTimeMillis();
+            final VerifyReport report = verifier.verify(samples);
+            report.print();
+            println("Verification took %d seconds.", (currentTimeMillis() - start) / 1000);
+            if (!report.isValid()) {
+                throw new IllegalStateException("Target does not match the source.");
+            }
+            println("Target matches the source.");
+        } finally {
+            if (null != mappingFile) {
+                mappingFile.close();
+            }
+            for (Long2LongStore store : new Long2LongStore[] {nodes, relationships}) {
+                if (null != store) {
+                    store.close();
+                }
+            }
+            for (DatabaseManagementService service :
+                    new DatabaseManagementService[] {source, target}) {
+                if (null != service) {
+                    service.shutdown();
+                }
+            }
+            executor.shutdown();
+        }
+    }
+
+    Config sourceConfig() {
+        final var cfgBld = Config.newBuilder();
+        if (null != sourceConfigurationFile && sourceConfigurationFile.isFile()) {
+            cfgBld.fromFile(sourceConfigurationFile.toPath());
+        }
+        return cfgBld.set(data_directory, sourceDataDirectory.toPath()).build();
+    }
+
+    DatabaseManagementService open(Config config, File dataDirectory) {
+        if (!dataDirectory.isDirectory()) {
+            throw new IllegalArgumentException("Data directory does not exist: " + dataDirectory);
+        }
+        return Neo4jHelper.openReadOnly(config, dataDirectory, databaseName);
+    }
+
+    static Long2LongStore openMapping(File directory) {
+        if (!directory.isDirectory()) {
+            println("Mapping does not exist: %s", directory);
+            return null;
+        }
+        return new Long2LongStore(directory);
+    }
+
+    static LongFunction<Long> lookup(MappingFile file) {
+        return id -> {
+            final long targetId = file.get(id);
+            return MappingFile.MISSING == targetId ? null : targetId;
+        };
+    }
+
+    static Set<String> orEmpty(Set<String> option) {
+        return Optional.ofNullable(option).orElse(Set.of());
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2002 Brinqa, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neo4j.tool.copy;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+import org.neo4j.graphdb.Label;
+import org.neo4j.tool.util.Neo4jHelper;
+
+/**
+ * Labels and properties to strip from records while copying.
+ *
+ * <p>Property rules are written as <code>[Label:]pattern</code> for nodes and <code>
+ * [TYPE:]pattern</code> for relationships, where the pattern is a property name that may contain
+ * '*' or '?' wildcards. A rule without a label or type applies to every record. The pattern
+ * matching is done once per property key and label (or type), every record after that is just a
+ * map lookup.
+ */
+public class CopyTransform {
+
+    private final Set<String> dropLabels;
+    private final Rules nodeRules;
+    private final Rules relationshipRules;
+
+    public CopyTransform(
+            Set<String> dropLabels,
+            Collection<String> dropNodeProperties,
+            Collection<String> dropRelationshipProperties) {
+        this.dropLabels = dropLabels;
+        this.nodeRules = new Rules(dropNodeProperties);
+        this.relationshipRules = new Rules(dropRelationshipProperties);
+    }
+
+    public static CopyTransform none() {
+        return new CopyTransform(Set.of(), List.of(), List.of());
+    }
+
+    public boolean isEmpty() {
+        return dropLabels.isEmpty() && nodeRules.isEmpty() && relationshipRules.isEmpty();
+    }
+
+    /** Labels to write to the target node. */
+    public Label[] labels(List<Label> labels) {
+        return Neo4jHelper.filterLabels(labels, dropLabels);
+    }
+
+    /** Properties to write to the target node. */
+    public Map<String, Object> nodeProperties(List<String> labels, Map<String, Object> properties) {
+        return nodeRules.strip(labels, properties);
+    }
+
+    /** Properties to write to the target relationship. */
+    public Map<String, Object> relationshipProperties(String type, Map<String, Object> properties) {
+        return relationshipRules.strip(List.of(type), properties);
+    }
+
+    static class Rules {
+        private final List<Pattern> global = new ArrayList<>();
+        private final Map<String, List<Pattern>> scoped = new HashMap<>();
+
+        // resolved decisions for each property key, globally and per scope
+        private final Map<String, Boolean> globalKeys = new HashMap<>();
+        private final Map<String, Map<String, Boolean>> scopedKeys = new HashMap<>();
+
+        Rules(Collection<String> specs) {
+            for (String spec : specs) {
+                final int idx = spec.indexOf(':');
+                if (idx < 0) {
+                    global.add(toPattern(spec));
+                } else {
+                    final var scope = spec.substring(0, idx);
+                    final var pattern = toPattern(spec.substring(idx + 1));
+                    scoped.computeIfAbsent(scope, na -> new ArrayList<>()).add(pattern);
+                    scopedKeys.put(scope, new HashMap<>());
+                }
+            }
+        }
+
+        boolean isEmpty() {
+            return global.isEmpty() && scoped.isEmpty();
+        }
+
+        Map<String, Object> strip(List<String> scopes, Map<String, Object> properties) {
+            if (isEmpty() || properties.isEmpty()) {
+                return properties;
+            }
+            Map<String, Object> ret = properties;
+            for (String key : properties.keySet()) {
+                if (drop(scopes, key)) {
+                    if (ret == properties) {
+                        ret = new HashMap<>(properties);
+                    }
+                    ret.remove(key);
+                }
+            }
+            return ret;
+        }
+
+        boolean drop(List<String> scopes, String key) {
+            if (globalKeys.computeIfAbsent(key, k -> matches(global, k))) {
+                return true;
+            }
+            for (String scope : scopes) {
+                final var keys = scopedKeys.get(scope);
+                if (null != keys
+                        && keys.computeIfAbsent(key, k -> matches(scoped.get(scope), k))) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        static boolean matches(List<Pattern> patterns, String key) {
+            return patterns.stream().anyMatch(p -> p.matcher(key).matches());
+        }
+
+        static Pattern toPattern(String glob) {
+            final var regex = new StringBuilder();
+            for (String part : glob.split("((?<=[*?])|(?=[*?]))")) {
+                if ("*".equals(part)) {
+                    regex.append(".*");
+                } else if ("?".equals(part)) {
+                    regex.append('.');
+                } else if (!part.isEmpty()) {
+                    regex.append(Pattern.quote(part));
+                }
+            }
+            return Pattern.compile(regex.toString());
+        }
+    }
+}
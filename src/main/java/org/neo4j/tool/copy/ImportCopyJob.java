@@ -0,0 +1,360 @@
+/*
+ * Copyright 2002 Brinqa, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neo4j.tool.copy;
+
+import static java.lang.System.currentTimeMillis;
+import static org.neo4j.tool.util.Flusher.newFlusher;
+import static org.neo4j.tool.util.Print.println;
+import static org.neo4j.tool.util.Print.progressPercentage;
+
+import com.brinqa.storage.Long2LongMapping;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import lombok.AllArgsConstructor;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.neo4j.batchinsert.BatchInserter;
+import org.neo4j.configuration.Config;
+import org.neo4j.graphdb.Label;
+import org.neo4j.internal.batchimport.AdditionalInitialIds;
+import org.neo4j.internal.batchimport.BatchImporterFactory;
+import org.neo4j.internal.batchimport.Configuration;
+import org.neo4j.internal.batchimport.ImportLogic;
+import org.neo4j.internal.batchimport.InputIterable;
+import org.neo4j.internal.batchimport.InputIterator;
+import org.neo4j.internal.batchimport.input.Collector;
+import org.neo4j.internal.batchimport.input.Groups;
+import org.neo4j.internal.batchimport.input.IdType;
+import org.neo4j.internal.batchimport.input.Input;
+import org.neo4j.internal.batchimport.input.InputChunk;
+import org.neo4j.internal.batchimport.input.InputEntityVisitor;
+import org.neo4j.internal.batchimport.input.PropertySizeCalculator;
+import org.neo4j.internal.batchimport.input.ReadableGroups;
+import org.neo4j.internal.batchimport.staging.ExecutionMonitors;
+import org.neo4j.internal.helpers.collection.Iterables;
+import org.neo4j.io.fs.DefaultFileSystemAbstraction;
+import org.neo4j.io.layout.DatabaseLayout;
+import org.neo4j.io.pagecache.tracing.PageCacheTracer;
+import org.neo4j.kernel.impl.index.schema.IndexImporterFactoryImpl;
+import org.neo4j.kernel.impl.scheduler.JobSchedulerFactory;
+import org.neo4j.kernel.impl.store.InvalidRecordException;
+import org.neo4j.kernel.impl.store.format.RecordFormatSelector;
+import org.neo4j.kernel.impl.transaction.log.files.TransactionLogInitializer;
+import org.neo4j.logging.NullLogProvider;
+import org.neo4j.logging.internal.NullLogService;
+import org.neo4j.memory.EmptyMemoryTracker;
+import org.neo4j.tool.util.Flusher;
+import org.neo4j.tool.util.PredicateHelper;
+
+/**
+ * Copies the source into an empty target with Neo4j's parallel batch importer, the same engine as
+ * <code>neo4j-admin import</code>.
+ *
+ * <p>NOTE: {@link BatchInserter} is not thread safe, so the source is read one chunk at a time
+ * while the importer writes the chunks with all the available processors. Nodes are given compact
+ * IDs as they're read, so the filtering and mapping are the same as {@link NodeCopyJob} and {@link
+ * RelationshipCopyJob}.
+ */
+@Slf4j
+@AllArgsConstructor
+public class ImportCopyJob {
+
+    private static final int CHUNK_SIZE = 10_000;
+
+    private final long highestNodeId;
+    private final long highestRelationshipId;
+    private final BatchInserter sourceDb;
+    private final Config targetConfig;
+    private final String acceptanceScript;
+    private final Set<String> deleteNodesWithLabels;
+    private final Set<String> deleteRelationshipsWithTypes;
+    private final String relationshipScript;
+    private final CopyTransform transform;
+
+    public void process(Long2LongMapping store) {
+        final var layout = DatabaseLayout.of(targetConfig);
+        final var types = deleteRelationshipsWithTypes;
+        try (PredicateBuilder builder = new PredicateBuilder();
+                final var filter = new RelationshipFilter(sourceDb, types, relationshipScript);
+                final var fs = new DefaultFileSystemAbstraction();
+                final var jobScheduler = JobSchedulerFactory.createInitialisedScheduler()) {
+            final var predicate = builder.newInstance(acceptanceScript);
+            final var input = new SourceInput(store, predicate, filter);
+            final var importer =
+                    BatchImporterFactory.withHighestPriority()
+                            .instantiate(
+                                    layout,
+                                    fs,
+                                    PageCacheTracer.NULL,
+                                    Configuration.DEFAULT,
+                                    NullLogService.getInstance(),
+                                    ExecutionMonitors.invisible(),
+                                    AdditionalInitialIds.EMPTY,
+                                    targetConfig,
+                                    RecordFormatSelector.selectForConfig(
+                                            targetConfig, NullLogProvider.getInstance()),
+                                    ImportLogic.NO_MONITOR,
+                                    jobScheduler,
+                                    Collector.EMPTY,
+                                    TransactionLogInitializer.getLogFilesInitializer(),
+                                    new IndexImporterFactoryImpl(targetConfig),
+                                    EmptyMemoryTracker.INSTANCE);
+            importer.doImport(input);
+            input.printFinalStats();
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @RequiredArgsConstructor
+    class SourceInput implements Input {
+
+        private final Long2LongMapping copiedNodes;
+        private final Predicate<NodeObject> acceptance;
+        private final RelationshipFilter filter;
+
+        private final Flusher flusher = newFlusher(sourceDb);
+        private final Predicate<List<String>> testDeleteLabels =
+                PredicateHelper.buildLabelInverseMatcher(deleteNodesWithLabels);
+
+        // stats
+        private final long start = currentTimeMillis();
+        private long progress = currentTimeMillis();
+        private long nextNodeId = 0L;
+        private long removedNodes = 0L;
+        private long removedRelationships = 0L;
+        private long copiedRelationships = 0L;
+
+        @Override
+        public InputIterable nodes(Collector badCollector) {
+            return () -> {
+                // the same compact IDs are given if the nodes are read again
+                nextNodeId = 0L;
+                removedNodes = 0L;
+                return new SourceIterator(highestNodeId, this::readNode);
+            };
+        }
+
+        @Override
+        public InputIterable relationships(Collector badCollector) {
+            return () -> {
+                copiedRelationships = 0L;
+                removedRelationships = 0L;
+                return new SourceIterator(highestRelationshipId, this::readRelationship);
+            };
+        }
+
+        @Override
+        public IdType idType() {
+            return IdType.ACTUAL;
+        }
+
+        @Override
+        public ReadableGroups groups() {
+            return new Groups();
+        }
+
+        @Override
+        public Estimates calculateEstimates(PropertySizeCalculator valueSizeCalculator) {
+            return Input.knownEstimates(
+                    highestNodeId + 1,
+                    highestRelationshipId + 1,
+                    (highestNodeId + 1) * 4,
+                    highestRelationshipId + 1,
+                    (highestNodeId + 1) * 64,
+                    (highestRelationshipId + 1) * 16,
+                    highestNodeId + 1);
+        }
+
+        /** Read a node, the target ID is the next compact ID. */
+        Entity readNode(long sourceNodeId) {
+            if (!sourceDb.nodeExists(sourceNodeId)) {
+                return null;
+            }
+            final var properties = sourceDb.getNodeProperties(sourceNodeId);
+            final var labels = Iterables.asList(sourceDb.getNodeLabels(sourceNodeId));
+            final var labelNames = labels.stream().map(Label::name).collect(Collectors.toList());
+            final var node = new NodeObject(labelNames, properties);
+            if (!testDeleteLabels.test(labelNames) || !acceptance.test(node)) {
+                removedNodes++;
+                return null;
+            }
+            final long targetNodeId = nextNodeId++;
+            copiedNodes.put(sourceNodeId, targetNodeId);
+            final var nodeLabels = transform.labels(labels);
+            final var names = new String[nodeLabels.length];
+            for (int i = 0; i < names.length; i++) {
+                names[i] = nodeLabels[i].name();
+            }
+            return new Entity(
+                    targetNodeId, -1, names, transform.nodeProperties(labelNames, properties));
+        }
+
+        Entity readRelationship(long relId) {
+            final var rel = sourceDb.getRelationshipById(relId);
+            if (!filter.acceptType(rel.getType())) {
+                removedRelationships++;
+                return null;
+            }
+            final Long startNodeId = copiedNodes.get(rel.getStartNode());
+            final Long endNodeId = copiedNodes.get(rel.getEndNode());
+            if (startNodeId == null || endNodeId == null) {
+                removedRelationships++;
+                return null;
+            }
+            final var type = rel.getType().name();
+            final var props = sourceDb.getRelationshipProperties(relId);
+            if (!filter.accept(rel, props)) {
+                removedRelationships++;
+                return null;
+            }
+            copiedRelationships++;
+            return new Entity(
+                    startNodeId,
+                    endNodeId,
+                    new String[] {type},
+                    transform.relationshipProperties(type, props));
+        }
+
+        void printFinalStats() {
+            final var time = Math.max(1, (currentTimeMillis() - start) / 1000);
+            final var fmt =
+                    new String[] {
+                        "%nImporting took %d seconds.",
+                        "Copied Nodes: %d",
+                        "Removed Nodes: %d",
+                        "Copied Relationships: %d",
+                        "Removed Relationships: %d"
+                    };
+            println(
+                    String.join("%n", fmt),
+                    time,
+                    nextNodeId,
+                    removedNodes,
+                    copiedRelationships,
+                    removedRelationships);
+        }
+
+        /** Reads the source in ID order, one chunk at a time. */
+        @RequiredArgsConstructor
+        class SourceIterator implements InputIterator {
+            private final long highestId;
+            private final RecordReader reader;
+            private long nextId = 0L;
+
+            @Override
+            public InputChunk newChunk() {
+                return new EntityChunk();
+            }
+
+            @Override
+            public synchronized boolean next(InputChunk chunk) {
+                final var entities = ((EntityChunk) chunk).reset();
+                while (nextId <= highestId && entities.size() < CHUNK_SIZE) {
+                    final long id = nextId++;
+                    try {
+                        final var entity = reader.read(id);
+                        if (null != entity) {
+                            entities.add(entity);
+                        }
+                    } catch (Exception e) {
+                        handleFailure(e, id);
+                    }
+                }
+                flusher.flush();
+
+                // check if it's been a second since last checked
+                final long now = currentTimeMillis();
+                if ((now - progress) > 1000 || nextId > highestId) {
+                    progress = now;
+                    progressPercentage(Math.min(nextId, highestId), Math.max(1, highestId));
+                }
+                return !entities.isEmpty();
+            }
+
+            void handleFailure(Exception e, long id) {
+                if (e instanceof InvalidRecordException && e.getMessage().endsWith("not in use")) {
+                    return;
+                }
+                log.error("Failed to process, ID: {} Message: {}", id, e.getMessage());
+            }
+
+            @Override
+            public void close() {
+                // nothing to release
+            }
+        }
+    }
+
+    interface RecordReader {
+        Entity read(long id);
+    }
+
+    /**
+     * Node or relationship ready for the importer, for a relationship the first ID is the start
+     * node and the labels hold the type.
+     */
+    @AllArgsConstructor
+    static class Entity {
+        final long id;
+        final long endId;
+        final String[] labels;
+        final Map<String, Object> properties;
+
+        void visit(InputEntityVisitor visitor) throws IOException {
+            if (endId < 0) {
+                visitor.id(id);
+                visitor.labels(labels);
+            } else {
+                visitor.startId(id);
+                visitor.endId(endId);
+                visitor.type(labels[0]);
+            }
+            properties.forEach(visitor::property);
+            visitor.endOfEntity();
+        }
+    }
+
+    static class EntityChunk implements InputChunk {
+        private final List<Entity> entities = new ArrayList<>(CHUNK_SIZE);
+        private int cursor = 0;
+
+        List<Entity> reset() {
+            entities.clear();
+            cursor = 0;
+            return entities;
+        }
+
+        @Override
+        public boolean next(InputEntityVisitor visitor) throws IOException {
+            if (cursor >= entities.size()) {
+                return false;
+            }
+            entities.get(cursor++).visit(visitor);
+            return true;
+        }
+
+        @Override
+        public void close() {
+            entities.clear();
+        }
+    }
+}
@@ -0,0 +1,235 @@
+/*
+ * Copyright 2002 Brinqa, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neo4j.tool.copy;
+
+import static org.neo4j.tool.util.Print.println;
+
+import com.brinqa.storage.Long2LongStore;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.Setter;
+import org.eclipse.collections.api.list.primitive.MutableLongList;
+import org.eclipse.collections.impl.list.mutable.primitive.LongArrayList;
+
+/**
+ * State kept between incremental copies, the source to target ID mappings and the fingerprints of
+ * the source records. The fingerprints of the last completed copy are kept until the next copy
+ * completes and replaces them.
+ *
+ * <p>A marker is kept in the directory from the time a copy starts writing the target. An
+ * interrupted copy leaves a partly written target behind, so the next run is refused until the
+ * target and the state are removed, rather than copying every record into it again.
+ */
+public class IncrementalState implements Closeable {
+
+    private static final int VERSION = 2;
+    private static final String FINGERPRINTS = "fingerprints.bin";
+    private static final String RUNNING = "copy.running";
+
+    private final File directory;
+    private final String settings;
+
+    @Getter private final Long2LongStore nodes;
+    @Getter private final Long2LongStore relationships;
+
+    // fingerprints from the last run, null for a full copy
+    @Getter private final RangeFingerprints previousNodes;
+    @Getter private final RangeFingerprints previousRelationships;
+
+    // fingerprints of this run
+    @Getter @Setter private RangeFingerprints nodeFingerprints;
+    @Getter @Setter private RangeFingerprints relationshipFingerprints;
+
+    // target records that need to be deleted after the copy
+    @Getter private final MutableLongList deletedNodes = new LongArrayList();
+    @Getter private final MutableLongList deletedRelationships = new LongArrayList();
+
+    /**
+     * Open the state in the directory provided.
+     *
+     * @param directory state directory
+     * @param settings copy options of the run, an incremental copy requires the same options
+     */
+    public IncrementalState(File directory, String settings) {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IllegalArgumentException("Unable to create state directory: " + directory);
+        }
+        this.directory = directory;
+        this.settings = settings;
+        if (interrupted(directory)) {
+            final var FMT =
+                    "The last copy using '%s' was interrupted, remove its target and the state directory to run a full copy.";
+            throw new IllegalStateException(String.format(FMT, directory));
+        }
+
+        final var file = new File(directory, FINGERPRINTS);
+        final Saved previous = file.isFile() ? read(file) : null;
+        if (null == previous) {
+            // the mappings are only valid along side the fingerprints
+            deleteDirectory(nodesDirectory(directory));
+            deleteDirectory(relationshipsDirectory(directory));
+        }
+        this.previousNodes = null == previous ? null : previous.nodes;
+        this.previousRelationships = null == previous ? null : previous.relationships;
+        // the sizes are saved, counting would read every key of the mappings
+        this.nodes =
+                new Long2LongStore(
+                        nodesDirectory(directory), null == previous ? 0 : previous.nodeCount);
+        try {
+            this.relationships =
+                    new Long2LongStore(
+                            relationshipsDirectory(directory),
+                            null == previous ? 0 : previous.relationshipCount);
+        } catch (RuntimeException e) {
+            nodes.close();
+            throw e;
+        }
+    }
+
+    /** Mark the copy as started, call before the first record is written to the target. */
+    public void start() {
+        try {
+            Files.createFile(new File(directory, RUNNING).toPath());
+        } catch (IOException ioe) {
+            throw new IllegalStateException(ioe);
+        }
+    }
+
+    /** Test if a completed copy left state in the directory. */
+    public static boolean exists(File directory) {
+        return null != directory && new File(directory, FINGERPRINTS).isFile();
+    }
+
+    /** Test if a copy was started with the state directory and did not complete. */
+    public static boolean interrupted(File directory) {
+        return null != directory && new File(directory, RUNNING).isFile();
+    }
+
+    /** Source to target node mapping of the state directory. */
+    public static File nodesDirectory(File directory) {
+        return new File(directory, "nodes");
+    }
+
+    /** Source to target relationship mapping of the state directory. */
+    public static File relationshipsDirectory(File directory) {
+        return new File(directory, "relationships");
+    }
+
+    public boolean isIncremental() {
+        return null != previousNodes;
+    }
+
+    /** Content of the state file, the mapping sizes and the fingerprints. */
+    @AllArgsConstructor
+    static class Saved {
+        final int nodeCount;
+        final int relationshipCount;
+        final RangeFingerprints nodes;
+        final RangeFingerprints relationships;
+    }
+
+    Saved read(File file) {
+        try (final var in =
+                new DataInputStream(new BufferedInputStream(Files.newInputStream(file.toPath())))) {
+            if (VERSION != in.readInt()) {
+                final var FMT =
+                        "Unsupported state version in '%s', remove it and the target to run a full copy.";
+                throw new IllegalArgumentException(String.format(FMT, directory));
+            }
+            if (!settings.equals(in.readUTF())) {
+                final var FMT =
+                        "Copy options have changed since the last run, remove '%s' to run a full copy.";
+                throw new IllegalArgumentException(String.format(FMT, directory));
+            }
+            return new Saved(
+                    in.readInt(), in.readInt(), readFingerprints(in), readFingerprints(in));
+        } catch (IOException ioe) {
+            throw new IllegalStateException(ioe);
+        }
+    }
+
+    static RangeFingerprints readFingerprints(DataInputStream in) throws IOException {
+        final long[] fingerprints = new long[in.readInt()];
+        for (int i = 0; i < fingerprints.length; i++) {
+            fingerprints[i] = in.readLong();
+        }
+        return new RangeFingerprints(fingerprints);
+    }
+
+    static void writeFingerprints(DataOutputStream out, RangeFingerprints fingerprints)
+            throws IOException {
+        final long[] values = fingerprints.toArray();
+        out.writeInt(values.length);
+        for (long value : values) {
+            out.writeLong(value);
+        }
+    }
+
+    /** Write the fingerprints of this run, only call once the copy has completed. */
+    public void save() {
+        final var file = new File(directory, FINGERPRINTS);
+        final var tmp = new File(directory, FINGERPRINTS + ".tmp");
+        try (final var out =
+                new DataOutputStream(
+                        new BufferedOutputStream(Files.newOutputStream(tmp.toPath())))) {
+            out.writeInt(VERSION);
+            out.writeUTF(settings);
+            out.writeInt(nodes.size());
+            out.writeInt(relationships.size());
+            writeFingerprints(out, nodeFingerprints);
+            writeFingerprints(out, relationshipFingerprints);
+        } catch (IOException ioe) {
+            throw new IllegalStateException(ioe);
+        }
+        try {
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            Files.delete(new File(directory, RUNNING).toPath());
+        } catch (IOException ioe) {
+            throw new IllegalStateException(ioe);
+        }
+        println("Incremental state saved to %s", directory);
+    }
+
+    static void deleteDirectory(File dir) {
+        final var files = dir.listFiles();
+        if (null == files) {
+            return;
+        }
+        for (File f : files) {
+            if (!f.delete()) {
+                throw new IllegalStateException("Unable to delete: " + f);
+            }
+        }
+        if (!dir.delete()) {
+            throw new IllegalStateException("Unable to delete: " + dir);
+        }
+    }
+
+    @Override
+    public void close() {
+        nodes.close();
+        relationships.close();
+    }
+}
@@ -16,13 +16,19 @@
 package org.neo4j.tool.copy;
 
 import static java.lang.System.currentTimeMillis;
+import static org.neo4j.tool.copy.RangeFingerprints.RANGE_SHIFT;
+import static org.neo4j.tool.copy.RangeFingerprints.RANGE_SIZE;
+import static org.neo4j.tool.copy.RangeFingerprints.hashNode;
+import static org.neo4j.tool.copy.RangeFingerprints.rangeOf;
 import static org.neo4j.tool.util.Flusher.newFlusher;
 import static org.neo4j.tool.util.Print.println;
 import static org.neo4j.tool.util.Print.progressPercentage;
 
-import com.brinqa.storage.Long2LongStore;
+import com.brinqa.storage.Long2LongMapping;
+import com.brinqa.storage.OffHeapBytes;
 import java.util.List;
 import java.util.Set;
+import java.util.function.LongPredicate;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 import java.util.stream.LongStream;
@@ -46,21 +52,59 @@ public class NodeCopyJob {
     private final BatchInserter targetDb;
     private final String acceptanceScript;
     private final Set<String> deleteNodesWithLabels;
+    private final CopyTransform transform;
+    private final IncrementalState incremental;
+    // reads the source ahead of the copy, null if disabled
+    private final StorePrefetcher prefetcher;
+    // source nodes that may be copied, all if null
+    private final LongPredicate nodeFilter;
+    // chooses the shard target of each node instead of the target, null for a single target
+    private final ShardPartitioner partitioner;
+    private final List<BatchInserter> shardDbs;
+    // shard of each copied source node plus one, if not null
+    private final OffHeapBytes nodeShards;
 
-    public void process(Long2LongStore store) {
+    /**
+     * @return share of the source nodes in use that were copied
+     */
+    public double process(Long2LongMapping store) {
+        return process(List.of(store));
+    }
+
+    /**
+     * Copy each node to the target of its shard.
+     *
+     * @param mappings source to target node IDs, one for each shard
+     * @return share of the source nodes in use that were copied
+     */
+    public double process(List<? extends Long2LongMapping> mappings) {
+        if (null != prefetcher) {
+            prefetcher.start(StorePrefetcher.Store.NODE, highestNodeId);
+        }
         try (PredicateBuilder builder = new PredicateBuilder()) {
             final var predicate = builder.newInstance(acceptanceScript);
-            new NodeCopyProcessor(store, predicate).process();
+            return new NodeCopyProcessor(mappings, predicate).process();
         } catch (Exception ioe) {
             throw new IllegalStateException(ioe);
+        } finally {
+            if (null != prefetcher) {
+                prefetcher.finish();
+            }
+        }
+    }
+
+    void reached(long sourceNodeId) {
+        if (null != prefetcher) {
+            prefetcher.reached(sourceNodeId);
         }
     }
 
     @RequiredArgsConstructor
     class NodeCopyProcessor {
 
+        // a mapping for each shard, only the first if not sharded
+        private final List<? extends Long2LongMapping> mappings;
         // acceptance criteria script
-        private final Long2LongStore copiedNodes;
         private final Predicate<NodeObject> acceptance;
 
         // stats
@@ -72,29 +116,87 @@ public class NodeCopyJob {
         private long count = 0L;
         private long notFound = 0L;
         private long removed = 0L;
+        private long unassigned = 0L;
         private long progress = System.currentTimeMillis();
 
         private final Predicate<List<String>> testDeleteLabels =
                 PredicateHelper.buildLabelInverseMatcher(deleteNodesWithLabels);
 
-        public void process() {
-            // run the task
-            LongStream.range(0, bound).forEach(this::processNode);
+        // incremental copy
+        private final RangeFingerprints fingerprints =
+                null == incremental ? null : new RangeFingerprints(highestNodeId);
+        private final RangeFingerprints previous =
+                null == incremental ? null : incremental.getPreviousNodes();
+        private long unchanged = 0L;
+        private long updated = 0L;
+
+        public double process() {
+            // run the task, range by range so unchanged ranges can be skipped
+            for (long range = 0; range <= rangeOf(highestNodeId); range++) {
+                final long first = range << RANGE_SHIFT;
+                final long last = Math.min(bound, first + RANGE_SIZE);
+                if (null != previous && unchangedRange(range, first, last)) {
+                    unchanged += last - first;
+                    count += last - first;
+                    continue;
+                }
+                LongStream.range(first, last).forEach(this::processNode);
+            }
+            // ranges copied by the last run past the highest node of this run
+            for (long range = rangeOf(highestNodeId) + 1; range < previousRanges(); range++) {
+                final long first = range << RANGE_SHIFT;
+                LongStream.range(first, first + RANGE_SIZE).forEach(this::forget);
+            }
+            if (null != incremental) {
+                incremental.setNodeFingerprints(fingerprints);
+            }
             // print the final percentage
             progressPercentage(count, bound);
             // print the final stats
-            printFinalStats(copiedNodes.size());
+            final long total = mappings.stream().mapToLong(Long2LongMapping::size).sum();
+            printFinalStats(total);
+            return (double) total / Math.max(1, bound - notFound);
+        }
+
+        /** Mapping of the target, incremental copies aren't sharded. */
+        Long2LongMapping copiedNodes() {
+            return mappings.get(0);
+        }
+
+        long previousRanges() {
+            return null == previous ? 0 : previous.ranges();
+        }
+
+        /** Fingerprint the source range and compare it to the last run. */
+        boolean unchangedRange(long range, long first, long last) {
+            long fingerprint = 0L;
+            for (long id = first; id < last; id++) {
+                reached(id);
+                try {
+                    if (sourceDb.nodeExists(id)) {
+                        final var labels = sourceDb.getNodeLabels(id);
+                        fingerprint += hashNode(id, labels, sourceDb.getNodeProperties(id));
+                    }
+                } catch (Exception e) {
+                    // unreadable records are handled when the range is copied
+                }
+            }
+            flusher.flush();
+            fingerprints.set(range, fingerprint);
+            return previous.matches(range, fingerprint);
         }
 
         void processNode(long sourceNodeId) {
+            reached(sourceNodeId);
             try {
                 if (!sourceDb.nodeExists(sourceNodeId)) {
                     notFound++;
-                } else {
-                    final long targetNodeId = copyNode(sourceNodeId);
-                    if (targetNodeId >= 0) {
-                        copiedNodes.put(sourceNodeId, targetNodeId);
-                    }
+                    forget(sourceNodeId);
+                } else if (null != nodeFilter && !nodeFilter.test(sourceNodeId)) {
+                    removed++;
+                    forget(sourceNodeId);
+                } else if (!copyNode(sourceNodeId)) {
+                    forget(sourceNodeId);
                 }
             } catch (Exception e) {
                 handleFailure(e, sourceNodeId);
@@ -111,22 +213,58 @@ public class NodeCopyJob {
             }
         }
 
-        long copyNode(long sourceNodeId) {
+        /** @return true if the node was copied, to its mapping */
+        boolean copyNode(long sourceNodeId) {
             // read previous node data, since it exists
             final var properties = sourceDb.getNodeProperties(sourceNodeId);
             final var labels = Iterables.asList(sourceDb.getNodeLabels(sourceNodeId));
+            if (null != fingerprints && null == previous) {
+                fingerprints.add(sourceNodeId, hashNode(sourceNodeId, labels, properties));
+            }
 
             // create a node object for criteria testing
             final var labelNames = labels.stream().map(Label::name).collect(Collectors.toList());
             final var node = new NodeObject(labelNames, properties);
-            if (testDeleteLabels.test(labelNames) && acceptance.test(node)) {
-                // accepted create the node
-                final var nodeLabels = labels.toArray(new Label[] {});
-                return targetDb.createNode(properties, nodeLabels);
-            }
-            // failed acceptance criteria filter
-            removed++;
-            return -1L;
+            if (!testDeleteLabels.test(labelNames) || !acceptance.test(node)) {
+                // failed acceptance criteria filter
+                removed++;
+                return false;
+            }
+            final int shard = null == partitioner ? 0 : partitioner.shardOf(labelNames, properties);
+            if (ShardPartitioner.NONE == shard) {
+                unassigned++;
+                return false;
+            }
+            // strip any labels and properties not to be copied
+            final var nodeLabels = transform.labels(labels);
+            final var nodeProperties = transform.nodeProperties(labelNames, properties);
+            // node was copied by the last run, so update it in place
+            final Long previousNodeId = null == previous ? null : copiedNodes().get(sourceNodeId);
+            if (null != previousNodeId) {
+                targetDb.setNodeProperties(previousNodeId, nodeProperties);
+                targetDb.setNodeLabels(previousNodeId, nodeLabels);
+                updated++;
+                return true;
+            }
+            // accepted create the node
+            final var target = null == partitioner ? targetDb : shardDbs.get(shard);
+            mappings.get(shard).put(sourceNodeId, target.createNode(nodeProperties, nodeLabels));
+            if (null != nodeShards) {
+                nodeShards.set(sourceNodeId, (byte) (shard + 1));
+            }
+            return true;
+        }
+
+        /** Node copied by the last run no longer exists or is no longer accepted. */
+        void forget(long sourceNodeId) {
+            if (null == previous) {
+                return;
+            }
+            final Long targetNodeId = copiedNodes().get(sourceNodeId);
+            if (null != targetNodeId) {
+                incremental.getDeletedNodes().add(targetNodeId);
+                copiedNodes().remove(sourceNodeId);
+            }
         }
 
         private void handleFailure(Exception e, long sourceNodeId) {
@@ -156,6 +294,16 @@ public class NodeCopyJob {
                     notFound,
                     removed,
                     total);
+            if (null != partitioner) {
+                for (int shard = 0; shard < mappings.size(); shard++) {
+                    println("Shard %d Copied: %d", shard, mappings.get(shard).size());
+                }
+                println("Without a Shard: %d", unassigned);
+            }
+            if (null != previous) {
+                final var FMT = "Unchanged Records: %d%nUpdated Records: %d%nDeleted Records: %d";
+                println(FMT, unchanged, updated, incremental.getDeletedNodes().size());
+            }
         }
     }
 }
@@ -19,6 +19,7 @@ import groovy.lang.GroovyClassLoader;
 import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
 import java.util.function.Predicate;
+import java.util.function.ToIntFunction;
 import org.apache.commons.lang3.StringUtils;
 
 public class PredicateBuilder implements AutoCloseable {
@@ -27,22 +28,58 @@ public class PredicateBuilder implements AutoCloseable {
 
     private static final String[] TEMPLATE = {
         "class Accept implements java.util.function.Predicate { ",
-        "  boolean test(Object node) {",
+        "  boolean test(Object %s) {",
         "    return %s",
         "  }",
         "}"
     };
 
+    private static final String[] SHARD_TEMPLATE = {
+        "class Shard implements java.util.function.ToIntFunction { ",
+        "  int applyAsInt(Object node) {",
+        "    def shard = (%s)",
+        "    return null == shard ? -1 : shard as int",
+        "  }",
+        "}"
+    };
+
+    /** Node acceptance, the script refers to the node as 'node'. */
     public Predicate<NodeObject> newInstance(String script) {
+        return newInstance(script, "node");
+    }
+
+    /** Relationship acceptance, the script refers to the relationship as 'rel'. */
+    public Predicate<RelationshipObject> newRelationshipInstance(String script) {
+        return newInstance(script, "rel");
+    }
+
+    /** Shard of a node, the script refers to the node as 'node' and returns null for none. */
+    public ToIntFunction<NodeObject> newShardInstance(String script) {
+        if (StringUtils.isBlank(script)) {
+            throw new IllegalArgumentException("Shard script is empty");
+        }
+        final var clazz = gcl.parseClass(String.format(String.join("\n", SHARD_TEMPLATE), script));
+        try {
+            //noinspection unchecked
+            return (ToIntFunction<NodeObject>) clazz.getConstructor().newInstance();
+        } catch (NoSuchMethodException
+                | InvocationTargetException
+                | InstantiationException
+                | IllegalAccessException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    <T> Predicate<T> newInstance(String script, String variable) {
         if (StringUtils.isBlank(script)) {
-            return nodeObject -> true;
+            return object -> true;
         }
         final var scriptFmt = String.join("\n", TEMPLATE);
-        final var clazzText = String.format(scriptFmt, script);
+        final var clazzText = String.format(scriptFmt, variable, script);
         final var clazz = gcl.parseClass(clazzText);
         try {
             //noinspection unchecked
-            return (Predicate<NodeObject>) clazz.getConstructor().newInstance();
+            return (Predicate<T>) clazz.getConstructor().newInstance();
         } catch (NoSuchMethodException
                 | InvocationTargetException
                 | InstantiationException
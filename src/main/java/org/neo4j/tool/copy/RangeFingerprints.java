@@ -0,0 +1,134 @@
+/*
+ * Copyright 2002 Brinqa, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neo4j.tool.copy;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import java.lang.reflect.Array;
+import java.util.Arrays;
+import java.util.Map;
+import org.neo4j.graphdb.Label;
+import org.neo4j.values.storable.Value;
+
+/**
+ * Fingerprints of the source records, one per fixed range of record IDs. A range whose fingerprint
+ * matches the previous run has not changed and does not need to be copied again.
+ *
+ * <p>Record hashes are summed so a fingerprint doesn't depend on the order properties or labels
+ * are read back in.
+ */
+public class RangeFingerprints {
+
+    public static final int RANGE_SHIFT = 16;
+    public static final long RANGE_SIZE = 1L << RANGE_SHIFT;
+
+    private static final HashFunction HASH = Hashing.murmur3_128();
+
+    private final long[] fingerprints;
+
+    public RangeFingerprints(long highestId) {
+        this(new long[(int) (rangeOf(highestId) + 1)]);
+    }
+
+    RangeFingerprints(long[] fingerprints) {
+        this.fingerprints = fingerprints;
+    }
+
+    public static long rangeOf(long id) {
+        return id >>> RANGE_SHIFT;
+    }
+
+    public int ranges() {
+        return fingerprints.length;
+    }
+
+    public long get(long range) {
+        return fingerprints[(int) range];
+    }
+
+    public void set(long range, long fingerprint) {
+        fingerprints[(int) range] = fingerprint;
+    }
+
+    /** Add the record hash to the fingerprint of its range. */
+    public void add(long id, long hash) {
+        fingerprints[(int) rangeOf(id)] += hash;
+    }
+
+    /** Test if the range exists and has the same fingerprint. */
+    public boolean matches(long range, long fingerprint) {
+        return range < fingerprints.length && fingerprints[(int) range] == fingerprint;
+    }
+
+    long[] toArray() {
+        return Arrays.copyOf(fingerprints, fingerprints.length);
+    }
+
+    public static long hashNode(long id, Iterable<Label> labels, Map<String, Object> properties) {
+        long hash = HASH.newHasher().putLong(id).hash().asLong();
+        for (Label label : labels) {
+            hash += HASH.hashUnencodedChars(label.name()).asLong();
+        }
+        return hash + hashProperties(properties);
+    }
+
+    public static long hashRelationship(
+            long id, long startNode, long endNode, String type, Map<String, Object> properties) {
+        final var hasher = HASH.newHasher().putLong(id).putLong(startNode).putLong(endNode);
+        final long hash = hasher.putUnencodedChars(type).hash().asLong();
+        return hash + hashProperties(properties);
+    }
+
+    static long hashProperties(Map<String, Object> properties) {
+        long hash = 0L;
+        for (Map.Entry<String, Object> e : properties.entrySet()) {
+            final Hasher hasher = HASH.newHasher().putUnencodedChars(e.getKey());
+            putValue(hasher, e.getValue());
+            hash += hasher.hash().asLong();
+        }
+        return hash;
+    }
+
+    /**
+     * Hash the type and the full content of the value. Neo4j hashes numerically equal values the
+     * same and folds them to 32 bits, a change from 1 to 1.0 would go unnoticed.
+     */
+    static void putValue(Hasher hasher, Object value) {
+        final Object v = value instanceof Value ? ((Value) value).asObjectCopy() : value;
+        hasher.putUnencodedChars(v.getClass().getName());
+        if (v instanceof String) {
+            hasher.putUnencodedChars((String) v);
+        } else if (v instanceof Double || v instanceof Float) {
+            hasher.putLong(Double.doubleToLongBits(((Number) v).doubleValue()));
+        } else if (v instanceof Number) {
+            hasher.putLong(((Number) v).longValue());
+        } else if (v instanceof Boolean) {
+            hasher.putBoolean((Boolean) v);
+        } else if (v instanceof Character) {
+            hasher.putChar((Character) v);
+        } else if (v.getClass().isArray()) {
+            final int length = Array.getLength(v);
+            hasher.putInt(length);
+            for (int i = 0; i < length; i++) {
+                putValue(hasher, Array.get(v, i));
+            }
+        } else {
+            // temporal and spatial values, their text form is complete
+            hasher.putUnencodedChars(v.toString());
+        }
+    }
+}
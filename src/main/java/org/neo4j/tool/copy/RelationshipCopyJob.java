@@ -15,12 +15,19 @@
  */
 package org.neo4j.tool.copy;
 
+import static org.neo4j.tool.copy.RangeFingerprints.RANGE_SHIFT;
+import static org.neo4j.tool.copy.RangeFingerprints.RANGE_SIZE;
+import static org.neo4j.tool.copy.RangeFingerprints.hashRelationship;
+import static org.neo4j.tool.copy.RangeFingerprints.rangeOf;
 import static org.neo4j.tool.util.Flusher.newFlusher;
 import static org.neo4j.tool.util.Neo4jHelper.percent;
 import static org.neo4j.tool.util.Print.printf;
+import static org.neo4j.tool.util.Print.println;
 import static org.neo4j.tool.util.Print.progressPercentage;
 
-import com.brinqa.storage.Long2LongStore;
+import com.brinqa.storage.Long2LongMapping;
+import java.util.Map;
+import java.util.Set;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.neo4j.batchinsert.BatchInserter;
@@ -34,8 +41,100 @@ public class RelationshipCopyJob {
     private final long highestRelationshipId;
     private final BatchInserter sourceDb;
     private final BatchInserter targetDb;
+    private final Set<String> deleteRelationshipsWithTypes;
+    private final String acceptanceScript;
+    private final CopyTransform transform;
+    private final IncrementalState incremental;
+    // reads the source ahead of the copy, null if disabled
+    private final StorePrefetcher prefetcher;
 
-    public void process(Long2LongStore copiedNodeIds) {
+    public void process(Long2LongMapping copiedNodeIds) {
+        if (null != prefetcher) {
+            prefetcher.start(StorePrefetcher.Store.RELATIONSHIP, highestRelationshipId);
+        }
+        final var deleteTypes = deleteRelationshipsWithTypes;
+        try (final var filter = new RelationshipFilter(sourceDb, deleteTypes, acceptanceScript)) {
+            process(copiedNodeIds, filter);
+        } finally {
+            if (null != prefetcher) {
+                prefetcher.finish();
+            }
+        }
+    }
+
+    /**
+     * Copy the relationships by walking the relationship chains of the copied nodes rather than
+     * scanning the whole store, for copies that keep a small part of the graph. A relationship
+     * between two copied nodes is met from both ends and copied from its start node only.
+     */
+    public void traverse(Long2LongMapping copiedNodeIds, long highestNodeId) {
+        final var deleteTypes = deleteRelationshipsWithTypes;
+        try (final var filter = new RelationshipFilter(sourceDb, deleteTypes, acceptanceScript)) {
+            traverse(copiedNodeIds, highestNodeId, filter);
+        }
+    }
+
+    void traverse(Long2LongMapping copiedNodeIds, long highestNodeId, RelationshipFilter filter) {
+        long time = System.currentTimeMillis();
+        long progress = time;
+        long nodes = 0;
+        long visited = 0;
+        long copied = 0;
+        long removed = 0;
+        final Flusher flusher = newFlusher(sourceDb);
+        for (long nodeId = 0; nodeId <= highestNodeId; nodeId++) {
+            if (null == copiedNodeIds.get(nodeId)) {
+                continue;
+            }
+            nodes++;
+            try {
+                for (BatchRelationship rel : sourceDb.getRelationships(nodeId)) {
+                    visited++;
+                    final long other =
+                            rel.getStartNode() == nodeId ? rel.getEndNode() : rel.getStartNode();
+                    // met again from the start node, or not copied at all
+                    if (rel.getStartNode() != nodeId || null == copiedNodeIds.get(other)) {
+                        continue;
+                    }
+                    if (createRelationship(rel, copiedNodeIds, filter, null)) {
+                        copied++;
+                    } else {
+                        removed++;
+                    }
+                }
+            } catch (Exception e) {
+                log.error(
+                        "Failed to traverse, node ID: {} Message: {}", nodeId, e.getMessage());
+            }
+            if (nodes % 10000 == 0) {
+                flusher.flush();
+            }
+            // check if it's been a second since last checked
+            long now = System.currentTimeMillis();
+            if ((now - progress) > 1000) {
+                progress = now;
+                progressPercentage(nodeId, highestNodeId);
+            }
+        }
+        progressPercentage(highestNodeId, highestNodeId);
+        time = Math.max(1, (System.currentTimeMillis() - time) / 1000);
+        final var msg =
+                "%nTraversing the relationships of %d copied nodes took %d seconds. Visited Relationships %d, Copied Relationships %d, Removed Relationships %d%n";
+        printf(msg, nodes, time, visited, copied, removed);
+    }
+
+    void reached(long relId) {
+        if (null != prefetcher) {
+            prefetcher.reached(relId);
+        }
+    }
+
+    void process(Long2LongMapping copiedNodeIds, RelationshipFilter filter) {
+        // incremental copy
+        final var fingerprints =
+                null == incremental ? null : new RangeFingerprints(highestRelationshipId);
+        final var previous = null == incremental ? null : incremental.getPreviousRelationships();
+        long unchanged = 0;
 
         long time = System.currentTimeMillis();
         long relId = 0;
@@ -45,14 +144,30 @@ public class RelationshipCopyJob {
         long progress = System.currentTimeMillis();
         final Flusher flusher = newFlusher(sourceDb);
         while (relId <= highestRelationshipId) {
+            // skip ranges that have not changed since the last run
+            if (null != previous && 0 == relId % RANGE_SIZE) {
+                final long last = Math.min(highestRelationshipId + 1, relId + RANGE_SIZE);
+                final long fingerprint = fingerprint(relId, last, copiedNodeIds);
+                fingerprints.set(rangeOf(relId), fingerprint);
+                flusher.flush();
+                if (previous.matches(rangeOf(relId), fingerprint)) {
+                    unchanged += last - relId;
+                    relId = last;
+                    continue;
+                }
+            }
+            reached(relId);
             try {
                 final var rel = sourceDb.getRelationshipById(relId);
-                if (!createRelationship(rel, copiedNodeIds)) {
+                // fingerprints are gathered while copying for a full copy
+                final var hashes = null == previous ? fingerprints : null;
+                if (!createRelationship(rel, copiedNodeIds, filter, hashes)) {
                     removed++;
                 }
             } catch (Exception e) {
                 if (e instanceof InvalidRecordException && e.getMessage().endsWith("not in use")) {
                     notFound++;
+                    forget(relId);
                 } else {
                     log.error(
                             "Failed to process, relationship ID: {} Message: {}",
@@ -73,6 +188,16 @@ public class RelationshipCopyJob {
                 progressPercentage(count, highestRelationshipId);
             }
         }
+        // ranges copied by the last run past the highest relationship of this run
+        final long previousRanges = null == previous ? 0 : previous.ranges();
+        for (long range = rangeOf(highestRelationshipId) + 1; range < previousRanges; range++) {
+            for (long id = range << RANGE_SHIFT; id < (range + 1) << RANGE_SHIFT; id++) {
+                forget(id);
+            }
+        }
+        if (null != incremental) {
+            incremental.setRelationshipFingerprints(fingerprints);
+        }
         progressPercentage(relId, highestRelationshipId);
         time = Math.max(1, (System.currentTimeMillis() - time) / 1000);
         final var msg =
@@ -86,21 +211,114 @@ public class RelationshipCopyJob {
                 percent(notFound, relId),
                 removed,
                 percent(removed, relId));
+        if (null != previous) {
+            final var FMT = "Unchanged Records: %d%nDeleted Records: %d";
+            println(FMT, unchanged, incremental.getDeletedRelationships().size());
+        }
+    }
+
+    /**
+     * Fingerprint the source range, the mapped end points are included so relationships of nodes
+     * that are no longer copied are revisited.
+     */
+    long fingerprint(long first, long last, Long2LongMapping copiedNodeIds) {
+        long fingerprint = 0L;
+        for (long id = first; id < last; id++) {
+            reached(id);
+            try {
+                final var rel = sourceDb.getRelationshipById(id);
+                final var props = sourceDb.getRelationshipProperties(id);
+                fingerprint += hash(rel, copiedNodeIds, props);
+            } catch (Exception e) {
+                // unused or unreadable records are handled when the range is copied
+            }
+        }
+        return fingerprint;
     }
 
-    boolean createRelationship(BatchRelationship rel, Long2LongStore copiedNodeIds) {
+    static long hash(BatchRelationship rel, Long2LongMapping copiedNodeIds, Map<String, Object> p) {
+        final Long startNodeId = copiedNodeIds.get(rel.getStartNode());
+        final Long endNodeId = copiedNodeIds.get(rel.getEndNode());
+        return hashRelationship(
+                rel.getId(),
+                null == startNodeId ? -1L : startNodeId,
+                null == endNodeId ? -1L : endNodeId,
+                rel.getType().name(),
+                p);
+    }
+
+    boolean createRelationship(
+            BatchRelationship rel,
+            Long2LongMapping copiedNodeIds,
+            RelationshipFilter filter,
+            RangeFingerprints fingerprints) {
         try {
+            Map<String, Object> sourceProps = null;
+            if (null != fingerprints) {
+                sourceProps = sourceDb.getRelationshipProperties(rel.getId());
+                fingerprints.add(rel.getId(), hash(rel, copiedNodeIds, sourceProps));
+            }
+            // rejected types skip reading anything else
+            if (!filter.acceptType(rel.getType())) {
+                forget(rel.getId());
+                return false;
+            }
             final Long startNodeId = copiedNodeIds.get(rel.getStartNode());
             final Long endNodeId = copiedNodeIds.get(rel.getEndNode());
             if (startNodeId == null || endNodeId == null) {
+                forget(rel.getId());
+                return false;
+            }
+            if (null == sourceProps) {
+                sourceProps = sourceDb.getRelationshipProperties(rel.getId());
+            }
+            if (!filter.accept(rel, sourceProps)) {
+                forget(rel.getId());
                 return false;
             }
-            final var props = sourceDb.getRelationshipProperties(rel.getId());
-            targetDb.createRelationship(startNodeId, endNodeId, rel.getType(), props);
+            final var type = rel.getType();
+            final var props = transform.relationshipProperties(type.name(), sourceProps);
+            // relationship was copied by the last run, so update it in place
+            if (null != incremental && incremental.isIncremental()) {
+                final Long previousId = incremental.getRelationships().get(rel.getId());
+                if (null != previousId && same(previousId, startNodeId, endNodeId, rel)) {
+                    targetDb.setRelationshipProperties(previousId, props);
+                    return true;
+                }
+                forget(rel.getId());
+            }
+            final long id = targetDb.createRelationship(startNodeId, endNodeId, type, props);
+            if (null != incremental) {
+                incremental.getRelationships().put(rel.getId(), id);
+            }
             return true;
         } catch (Exception e) {
             log.error("Failed to create relationship.", e);
         }
         return false;
     }
+
+    boolean same(long targetId, long startNodeId, long endNodeId, BatchRelationship rel) {
+        try {
+            final var target = targetDb.getRelationshipById(targetId);
+            return target.getStartNode() == startNodeId
+                    && target.getEndNode() == endNodeId
+                    && target.getType().name().equals(rel.getType().name());
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    /** Relationship copied by the last run no longer exists or is no longer copied. */
+    void forget(long sourceRelationshipId) {
+        if (null == incremental || !incremental.isIncremental()) {
+            return;
+        }
+        final var relationships = incremental.getRelationships();
+        final Long targetId = relationships.get(sourceRelationshipId);
+        if (null != targetId) {
+            incremental.getDeletedRelationships().add(targetId);
+            relationships.remove(sourceRelationshipId);
+        }
+    }
 }
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2002 Brinqa, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neo4j.tool.copy;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+import org.neo4j.batchinsert.BatchInserter;
+import org.neo4j.batchinsert.internal.BatchRelationship;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.RelationshipType;
+
+/**
+ * Acceptance criteria for relationships, by type and by script. The type is checked before any
+ * properties are read, so rejected types cost nothing more than the relationship record.
+ */
+public class RelationshipFilter implements AutoCloseable {
+
+    private final BatchInserter sourceDb;
+    private final Set<String> deleteTypes;
+    private final PredicateBuilder builder = new PredicateBuilder();
+    private final Predicate<RelationshipObject> acceptance;
+
+    // resolved decision for each type
+    private final Map<String, Boolean> types = new HashMap<>();
+
+    public RelationshipFilter(BatchInserter sourceDb, Set<String> deleteTypes, String script) {
+        this.sourceDb = sourceDb;
+        this.deleteTypes = deleteTypes;
+        this.acceptance = builder.newRelationshipInstance(script);
+    }
+
+    public static RelationshipFilter none(BatchInserter sourceDb) {
+        return new RelationshipFilter(sourceDb, Set.of(), null);
+    }
+
+    /** Test the type of the relationship, before reading anything else. */
+    public boolean acceptType(RelationshipType type) {
+        return types.computeIfAbsent(type.name(), name -> !deleteTypes.contains(name));
+    }
+
+    /** Test the relationship with the acceptance script. */
+    public boolean accept(BatchRelationship rel, Map<String, Object> properties) {
+        final var relationship =
+                new RelationshipObject(
+                        rel.getType().name(),
+                        properties,
+                        () -> labels(rel.getStartNode()),
+                        () -> labels(rel.getEndNode()));
+        return acceptance.test(relationship);
+    }
+
+    List<String> labels(long nodeId) {
+        return StreamSupport.stream(sourceDb.getNodeLabels(nodeId).spliterator(), false)
+                .map(Label::name)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public void close() {
+        builder.close();
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2002 Brinqa, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neo4j.tool.copy;
+
+import groovy.lang.GroovyObjectSupport;
+import groovy.lang.MissingPropertyException;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+public class RelationshipObject extends GroovyObjectSupport {
+
+    private final String type;
+    private final Map<String, Object> properties;
+    private final Supplier<List<String>> startLabels;
+    private final Supplier<List<String>> endLabels;
+
+    /**
+     * @param type relationship type
+     * @param properties relationship properties
+     * @param startLabels labels of the start node, only read if the script uses them
+     * @param endLabels labels of the end node, only read if the script uses them
+     */
+    public RelationshipObject(
+            String type,
+            Map<String, Object> properties,
+            Supplier<List<String>> startLabels,
+            Supplier<List<String>> endLabels) {
+        this.type = type;
+        this.properties = properties;
+        this.startLabels = startLabels;
+        this.endLabels = endLabels;
+    }
+
+    /**
+     * Use this to test certain criteria without throwing exceptions.
+     *
+     * @param name property name
+     * @return true if there's a value else false.
+     */
+    public boolean containsProperty(String name) {
+        return this.properties.containsKey(name);
+    }
+
+    /**
+     * Get the property from the relationship, dynamically.
+     *
+     * @param propertyName name of the relationship property
+     * @return value from the property or throw {@link MissingPropertyException}
+     */
+    @Override
+    public Object getProperty(String propertyName) {
+        if ("type".equals(propertyName)) {
+            return this.type;
+        }
+        if ("startLabels".equals(propertyName)) {
+            return this.startLabels.get();
+        }
+        if ("endLabels".equals(propertyName)) {
+            return this.endLabels.get();
+        }
+        if (this.properties.containsKey(propertyName)) {
+            return this.properties.get(propertyName);
+        }
+        throw new MissingPropertyException(propertyName, null);
+    }
+}
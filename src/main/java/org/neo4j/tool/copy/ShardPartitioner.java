@@ -0,0 +1,101 @@
+/*
+ * Copyright 2002 Brinqa, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neo4j.tool.copy;
+
+import com.google.common.hash.Hashing;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ToIntFunction;
+
+/** Chooses the target shard of a node, -1 if the node belongs to none and isn't copied. */
+public interface ShardPartitioner {
+
+    int NONE = -1;
+
+    int shardOf(List<String> labels, Map<String, Object> properties);
+
+    /** Number of shards the nodes are spread over. */
+    int shards();
+
+    /** A shard per label, a node goes to the shard of the first of the labels it has. */
+    static ShardPartitioner byLabel(List<String> shardLabels) {
+        if (shardLabels.isEmpty()) {
+            throw new IllegalArgumentException("At least one shard label is required");
+        }
+        return new ShardPartitioner() {
+            @Override
+            public int shardOf(List<String> labels, Map<String, Object> properties) {
+                for (int shard = 0; shard < shardLabels.size(); shard++) {
+                    if (labels.contains(shardLabels.get(shard))) {
+                        return shard;
+                    }
+                }
+                return NONE;
+            }
+
+            @Override
+            public int shards() {
+                return shardLabels.size();
+            }
+        };
+    }
+
+    /** Spread the nodes by a hash of the property value, nodes without the property go nowhere. */
+    static ShardPartitioner byProperty(String property, int shards) {
+        checkShards(shards);
+        return new ShardPartitioner() {
+            @Override
+            public int shardOf(List<String> labels, Map<String, Object> properties) {
+                final Object value = properties.get(property);
+                if (null == value) {
+                    return NONE;
+                }
+                // stable across runs and JVMs, unlike hashCode of some values
+                final var hash =
+                        Hashing.murmur3_32_fixed().hashUnencodedChars(String.valueOf(value));
+                return Math.floorMod(hash.asInt(), shards);
+            }
+
+            @Override
+            public int shards() {
+                return shards;
+            }
+        };
+    }
+
+    /** Shard returned by a script, a shard outside the range means the node isn't copied. */
+    static ShardPartitioner byScript(ToIntFunction<NodeObject> script, int shards) {
+        checkShards(shards);
+        return new ShardPartitioner() {
+            @Override
+            public int shardOf(List<String> labels, Map<String, Object> properties) {
+                final int shard = script.applyAsInt(new NodeObject(labels, properties));
+                return shard >= 0 && shard < shards ? shard : NONE;
+            }
+
+            @Override
+            public int shards() {
+                return shards;
+            }
+        };
+    }
+
+    static void checkShards(int shards) {
+        if (shards < 1) {
+            throw new IllegalArgumentException("At least one shard is required: " + shards);
+        }
+    }
+}
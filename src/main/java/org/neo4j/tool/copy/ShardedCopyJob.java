@@ -0,0 +1,228 @@
+/*
+ * Copyright 2002 Brinqa, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neo4j.tool.copy;
+
+import static java.lang.System.currentTimeMillis;
+import static org.neo4j.tool.util.Flusher.newFlusher;
+import static org.neo4j.tool.util.Print.println;
+import static org.neo4j.tool.util.Print.progressPercentage;
+
+import com.brinqa.storage.Long2LongMapping;
+import com.brinqa.storage.OffHeapBytes;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+import java.util.Set;
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.neo4j.batchinsert.BatchInserter;
+import org.neo4j.batchinsert.internal.BatchRelationship;
+import org.neo4j.kernel.impl.store.InvalidRecordException;
+import org.neo4j.tool.util.Flusher;
+
+/**
+ * Splits the source into several targets in one pass. {@link NodeCopyJob} sends each accepted node
+ * to the target of its shard, with a mapping per shard, and a relationship is copied if both its
+ * nodes went to the same shard. The shard of each node is kept in a byte, so a relationship only
+ * reads the mapping of its shard. Relationships between shards can't be copied, they're counted
+ * and can be written to a report.
+ *
+ * <p>NOTE: {@link BatchInserter} is not thread safe.
+ */
+@Slf4j
+@AllArgsConstructor
+public class ShardedCopyJob {
+
+    static final String REPORT_HEADER =
+            "relationshipId,type,startNodeId,startShard,endNodeId,endShard";
+    // a node's shard plus one fits an unsigned byte, 0 is left for nodes that weren't copied
+    public static final int MAX_SHARDS = 255;
+
+    private final long highestNodeId;
+    private final long highestRelationshipId;
+    private final BatchInserter sourceDb;
+    private final List<BatchInserter> targets;
+    private final String acceptanceScript;
+    private final Set<String> deleteNodesWithLabels;
+    private final Set<String> deleteRelationshipsWithTypes;
+    private final String relationshipScript;
+    private final CopyTransform transform;
+    // reads the source ahead of the copy, null if disabled
+    private final StorePrefetcher prefetcher;
+    private final ShardPartitioner partitioner;
+    // cross shard relationships are written here, if not null
+    private final File crossShardReport;
+
+    /** @param mappings source to target node IDs, one for each shard */
+    public void process(List<? extends Long2LongMapping> mappings) {
+        if (mappings.size() != targets.size() || targets.size() != partitioner.shards()) {
+            final var FMT = "%d shard(s) with %d target(s) and %d mapping(s)";
+            final var msg =
+                    String.format(FMT, partitioner.shards(), targets.size(), mappings.size());
+            throw new IllegalArgumentException(msg);
+        }
+        if (partitioner.shards() > MAX_SHARDS) {
+            final var msg = String.format("Sharding supports up to %d targets.", MAX_SHARDS);
+            throw new IllegalArgumentException(msg);
+        }
+        final var types = deleteRelationshipsWithTypes;
+        try (final var nodeShards = new OffHeapBytes(highestNodeId + 1);
+                final var filter = new RelationshipFilter(sourceDb, types, relationshipScript)) {
+            // the nodes are copied like any other copy, only to the target of their shard
+            new NodeCopyJob(
+                            highestNodeId,
+                            sourceDb,
+                            null,
+                            acceptanceScript,
+                            deleteNodesWithLabels,
+                            transform,
+                            null,
+                            prefetcher,
+                            null,
+                            partitioner,
+                            targets,
+                            nodeShards)
+                    .process(mappings);
+            if (null != prefetcher) {
+                prefetcher.start(StorePrefetcher.Store.RELATIONSHIP, highestRelationshipId);
+            }
+            try {
+                copyRelationships(mappings, nodeShards, filter);
+            } finally {
+                if (null != prefetcher) {
+                    prefetcher.finish();
+                }
+            }
+        } catch (IOException ioe) {
+            throw new IllegalStateException(ioe);
+        }
+    }
+
+    void copyRelationships(
+            List<? extends Long2LongMapping> mappings,
+            OffHeapBytes nodeShards,
+            RelationshipFilter filter)
+            throws IOException {
+        final long start = currentTimeMillis();
+        final Flusher flusher = newFlusher(sourceDb);
+        final long[] copied = new long[targets.size()];
+        long removed = 0;
+        long crossShard = 0;
+        long progress = start;
+        try (final Writer report =
+                null == crossShardReport
+                        ? null
+                        : new BufferedWriter(new FileWriter(crossShardReport))) {
+            if (null != report) {
+                report.write(REPORT_HEADER);
+                report.write(System.lineSeparator());
+            }
+            for (long id = 0; id <= highestRelationshipId; id++) {
+                if (null != prefetcher) {
+                    prefetcher.reached(id);
+                }
+                try {
+                    final var rel = sourceDb.getRelationshipById(id);
+                    final int startShard = shardOf(nodeShards, rel.getStartNode());
+                    final int endShard = shardOf(nodeShards, rel.getEndNode());
+                    if (!filter.acceptType(rel.getType())
+                            || ShardPartitioner.NONE == startShard
+                            || ShardPartitioner.NONE == endShard) {
+                        removed++;
+                    } else if (startShard != endShard) {
+                        crossShard++;
+                        if (null != report) {
+                            report(report, rel, startShard, endShard);
+                        }
+                    } else if (create(rel, mappings.get(startShard), startShard, filter)) {
+                        copied[startShard]++;
+                    } else {
+                        removed++;
+                    }
+                } catch (Exception e) {
+                    if (!(e instanceof InvalidRecordException)
+                            || !e.getMessage().endsWith("not in use")) {
+                        log.error(
+                                "Failed to process, relationship ID: {} Message: {}",
+                                id,
+                                e.getMessage());
+                    }
+                }
+                if (id % 10_000 == 0) {
+                    flusher.flush();
+                }
+                final long now = currentTimeMillis();
+                if ((now - progress) > 1000) {
+                    progress = now;
+                    progressPercentage(id, highestRelationshipId);
+                }
+            }
+        }
+        progressPercentage(highestRelationshipId, highestRelationshipId);
+        final long time = Math.max(1, (currentTimeMillis() - start) / 1000);
+        println("%nSharding the relationships took %d seconds.", time);
+        for (int shard = 0; shard < copied.length; shard++) {
+            println("Shard %d Copied Relationships: %d", shard, copied[shard]);
+        }
+        println("Removed Relationships: %d%nCross Shard Relationships: %d", removed, crossShard);
+        if (null != crossShardReport && crossShard > 0) {
+            println("Cross shard relationships written to %s", crossShardReport);
+        }
+    }
+
+    /** Shard the node was copied to, recorded by the node copy. */
+    static int shardOf(OffHeapBytes nodeShards, long nodeId) {
+        return Byte.toUnsignedInt(nodeShards.get(nodeId)) - 1;
+    }
+
+    boolean create(
+            BatchRelationship rel, Long2LongMapping mapping, int shard, RelationshipFilter filter) {
+        try {
+            final var properties = sourceDb.getRelationshipProperties(rel.getId());
+            if (!filter.accept(rel, properties)) {
+                return false;
+            }
+            final var type = rel.getType();
+            targets.get(shard)
+                    .createRelationship(
+                            mapping.get(rel.getStartNode()),
+                            mapping.get(rel.getEndNode()),
+                            type,
+                            transform.relationshipProperties(type.name(), properties));
+            return true;
+        } catch (Exception e) {
+            log.error("Failed to create relationship.", e);
+        }
+        return false;
+    }
+
+    static void report(Writer report, BatchRelationship rel, int startShard, int endShard)
+            throws IOException {
+        report.write(
+                String.join(
+                        ",",
+                        Long.toString(rel.getId()),
+                        rel.getType().name(),
+                        Long.toString(rel.getStartNode()),
+                        Integer.toString(startShard),
+                        Long.toString(rel.getEndNode()),
+                        Integer.toString(endShard)));
+        report.write(System.lineSeparator());
+    }
+}
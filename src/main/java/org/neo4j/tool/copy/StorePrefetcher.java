@@ -0,0 +1,314 @@
+/*
+ * Copyright 2002 Brinqa, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neo4j.tool.copy;
+
+import static org.neo4j.kernel.impl.store.NoStoreHeader.NO_STORE_HEADER;
+import static org.neo4j.tool.util.Print.println;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import lombok.extern.slf4j.Slf4j;
+import org.neo4j.configuration.Config;
+import org.neo4j.io.layout.DatabaseLayout;
+import org.neo4j.io.pagecache.PageCache;
+import org.neo4j.kernel.impl.store.format.RecordFormatSelector;
+import org.neo4j.logging.NullLogProvider;
+
+/**
+ * Reads the source store files ahead of the copy, so the pages are in the OS cache by the time the
+ * single copy thread gets to them. Node and relationship pages are read a distance ahead of the
+ * record being copied. With the standard record format the property chains the records point to
+ * are read as well, they're the random reads that stall the copy the most.
+ *
+ * <p>A page the copy reaches after it was read ahead counts as a hit, a page it reaches first is a
+ * miss, the hit rate shows if the distance is large enough.
+ */
+@Slf4j
+public class StorePrefetcher implements Closeable {
+
+    static final int PAGE_SIZE = PageCache.PAGE_SIZE;
+    // pages read at once
+    static final int CHUNK_PAGES = 16;
+    // standard format record sizes, and where the property pointer is in the record
+    static final int STANDARD_NODE_SIZE = 15;
+    static final int STANDARD_RELATIONSHIP_SIZE = 34;
+    static final int NODE_PROPERTY_OFFSET = 5;
+    static final int RELATIONSHIP_PROPERTY_OFFSET = 29;
+    static final long NO_PROPERTY = 0xF_FFFF_FFFFL;
+
+    public enum Store {
+        NODE,
+        RELATIONSHIP
+    }
+
+    /** Progress of the store being copied, the copy thread moves it and the prefetcher follows. */
+    static class Phase {
+        final Store store;
+        final FileChannel channel;
+        final int recordSize;
+        final int propertyOffset;
+        final long lastPage;
+
+        volatile long current = 0L;
+        // next page to read
+        volatile long fetched = 0L;
+        volatile boolean done = false;
+
+        // the copy thread's own counts
+        long lastReached = -1L;
+        long hits = 0L;
+        long misses = 0L;
+
+        Phase(Store store, FileChannel channel, int recordSize, int offset, long highestId) {
+            this.store = store;
+            this.channel = channel;
+            this.recordSize = recordSize;
+            this.propertyOffset = offset;
+            this.lastPage = pageOf(highestId, recordSize);
+        }
+    }
+
+    private final long distance;
+    private final FileChannel nodes;
+    private final FileChannel relationships;
+    private final FileChannel properties;
+    private final int nodeSize;
+    private final int relationshipSize;
+    private final int propertySize;
+    private final boolean standard;
+    private final Thread thread;
+    private final AtomicLong bytesRead = new AtomicLong();
+    private final AtomicLong propertyPages = new AtomicLong();
+
+    private volatile Phase phase = null;
+    private volatile boolean running = true;
+
+    /**
+     * @param distance records to read ahead of the record being copied
+     */
+    public StorePrefetcher(Config config, long distance) {
+        final var layout = DatabaseLayout.of(config);
+        final var formats =
+                RecordFormatSelector.selectForConfig(config, NullLogProvider.getInstance());
+        this.distance = distance;
+        this.nodeSize = formats.node().getRecordSize(NO_STORE_HEADER);
+        this.relationshipSize = formats.relationship().getRecordSize(NO_STORE_HEADER);
+        this.propertySize = formats.property().getRecordSize(NO_STORE_HEADER);
+        this.standard =
+                STANDARD_NODE_SIZE == nodeSize && STANDARD_RELATIONSHIP_SIZE == relationshipSize;
+        this.nodes = open(layout.nodeStore());
+        this.relationships = open(layout.relationshipStore());
+        this.properties = standard ? open(layout.propertyStore()) : null;
+        this.thread = new Thread(this::prefetch, "store-prefetcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    static FileChannel open(Path file) {
+        try {
+            return Files.isRegularFile(file)
+                    ? FileChannel.open(file, StandardOpenOption.READ)
+                    : null;
+        } catch (IOException ioe) {
+            log.warn("Unable to open {} to prefetch: {}", file, ioe.getMessage());
+            return null;
+        }
+    }
+
+    static long pageOf(long id, int recordSize) {
+        return id / (PAGE_SIZE / recordSize);
+    }
+
+    /** Start reading ahead of the copy of a store, the last store's hit rate is printed. */
+    public void start(Store store, long highestId) {
+        finish();
+        final var channel = Store.NODE == store ? nodes : relationships;
+        if (null == channel) {
+            return;
+        }
+        final int size = Store.NODE == store ? nodeSize : relationshipSize;
+        final int offset =
+                Store.NODE == store ? NODE_PROPERTY_OFFSET : RELATIONSHIP_PROPERTY_OFFSET;
+        phase = new Phase(store, channel, size, offset, highestId);
+        LockSupport.unpark(thread);
+    }
+
+    /** The copy thread is about to read the record. */
+    public void reached(long id) {
+        final var p = phase;
+        if (null == p) {
+            return;
+        }
+        p.current = id;
+        final long page = pageOf(id, p.recordSize);
+        if (page == p.lastReached) {
+            return;
+        }
+        p.lastReached = page;
+        if (page < p.fetched) {
+            p.hits++;
+        } else {
+            p.misses++;
+        }
+    }
+
+    /** Stop reading ahead of the current store and print its hit rate. */
+    public void finish() {
+        final var p = phase;
+        if (null == p) {
+            return;
+        }
+        p.done = true;
+        phase = null;
+        final long pages = p.hits + p.misses;
+        final var FMT =
+                "Prefetch of the %s store: %.1f%% hits (%,d of %,d pages), %,d MB read,"
+                        + " %,d property page(s)";
+        println(
+                FMT,
+                p.store.name().toLowerCase(),
+                pages == 0 ? 0d : 100d * p.hits / pages,
+                p.hits,
+                pages,
+                bytesRead.getAndSet(0) / (1024 * 1024),
+                propertyPages.getAndSet(0));
+    }
+
+    void prefetch() {
+        final var chunk = ByteBuffer.allocateDirect(CHUNK_PAGES * PAGE_SIZE);
+        final var page = ByteBuffer.allocateDirect(PAGE_SIZE);
+        while (running) {
+            final var p = phase;
+            if (null == p || p.done) {
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(10));
+                continue;
+            }
+            // the copy may skip ranges, there's no point reading behind it
+            final long currentPage = pageOf(p.current, p.recordSize);
+            if (p.fetched < currentPage) {
+                p.fetched = currentPage;
+            }
+            final long target = Math.min(p.lastPage, pageOf(p.current + distance, p.recordSize));
+            if (p.fetched > target) {
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+                continue;
+            }
+            final int pages = (int) Math.min(CHUNK_PAGES, target - p.fetched + 1);
+            try {
+                chunk.clear().limit(pages * PAGE_SIZE);
+                final int read = read(p.channel, chunk, p.fetched * PAGE_SIZE);
+                if (null != properties && read > 0) {
+                    prefetchProperties(p, chunk, read, page);
+                }
+            } catch (IOException ioe) {
+                log.warn("Prefetch stopped: {}", ioe.getMessage());
+                p.done = true;
+                continue;
+            }
+            p.fetched += pages;
+        }
+    }
+
+    int read(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        int total = 0;
+        while (buffer.hasRemaining()) {
+            final int read = channel.read(buffer, position + total);
+            if (read < 0) {
+                break;
+            }
+            total += read;
+        }
+        bytesRead.addAndGet(total);
+        return total;
+    }
+
+    /** Read the first property page of every record in use, in file order. */
+    void prefetchProperties(Phase p, ByteBuffer chunk, int length, ByteBuffer page)
+            throws IOException {
+        final int perPage = PAGE_SIZE / p.recordSize;
+        final long[] pages = new long[length / PAGE_SIZE * perPage + perPage];
+        int n = 0;
+        for (int start = 0; start < length; start += PAGE_SIZE) {
+            for (int r = 0; r < perPage; r++) {
+                final int offset = start + r * p.recordSize;
+                if (offset + p.recordSize > length) {
+                    break;
+                }
+                final long property = propertyOf(chunk, offset, p.propertyOffset);
+                if (property >= 0) {
+                    pages[n++] = pageOf(property, propertySize);
+                }
+            }
+        }
+        Arrays.sort(pages, 0, n);
+        long last = -1L;
+        for (int i = 0; i < n && running; i++) {
+            if (pages[i] == last) {
+                continue;
+            }
+            last = pages[i];
+            page.clear();
+            read(properties, page, last * PAGE_SIZE);
+            propertyPages.incrementAndGet();
+        }
+    }
+
+    /**
+     * First property of a standard format node or relationship record, the high bits of the
+     * pointer are in the top of the header byte.
+     *
+     * @return -1 if the record isn't in use or has no properties
+     */
+    static long propertyOf(ByteBuffer records, int offset, int propertyOffset) {
+        final byte header = records.get(offset);
+        if ((header & 0x1) == 0) {
+            return -1L;
+        }
+        final long low = records.getInt(offset + propertyOffset) & 0xFFFF_FFFFL;
+        final long property = low | ((header & 0xF0L) << 28);
+        return NO_PROPERTY == property ? -1L : property;
+    }
+
+    @Override
+    public void close() {
+        finish();
+        running = false;
+        LockSupport.unpark(thread);
+        try {
+            thread.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (FileChannel channel : new FileChannel[] {nodes, relationships, properties}) {
+            try {
+                if (null != channel) {
+                    channel.close();
+                }
+            } catch (IOException ioe) {
+                // na
+            }
+        }
+    }
+}
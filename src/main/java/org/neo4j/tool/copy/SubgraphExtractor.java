@@ -0,0 +1,227 @@
+/*
+ * Copyright 2002 Brinqa, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neo4j.tool.copy;
+
+import static java.lang.System.currentTimeMillis;
+import static org.neo4j.tool.util.Flusher.newFlusher;
+import static org.neo4j.tool.util.Print.println;
+import static org.neo4j.tool.util.Print.progressPercentage;
+
+import com.brinqa.storage.OffHeapBitmap;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import lombok.Builder;
+import lombok.extern.slf4j.Slf4j;
+import org.neo4j.batchinsert.BatchInserter;
+import org.neo4j.batchinsert.internal.BatchRelationship;
+import org.neo4j.graphdb.Label;
+import org.neo4j.tool.util.Flusher;
+
+/**
+ * Collects the nodes within a number of hops of a set of seed nodes, so a copy of them and the
+ * relationships between them is a connected part of the source rather than nodes picked one by
+ * one with their relationships cut.
+ *
+ * <p>Nodes with more relationships than the degree cap are kept but not expanded, a supernode
+ * would otherwise pull in most of the graph. Collecting stops once the node limit is reached.
+ */
+@Slf4j
+@Builder
+public class SubgraphExtractor {
+
+    private final BatchInserter sourceDb;
+    private final long highestNodeId;
+    // seeds, nodes with any of the labels, or any of the property values, or listed by ID
+    @Builder.Default private final Set<String> seedLabels = Set.of();
+    @Builder.Default private final Map<String, String> seedProperties = Map.of();
+    private final File seedIds;
+    @Builder.Default private final int hops = 2;
+    // types to expand along, all if empty
+    @Builder.Default private final Set<String> relationshipTypes = Set.of();
+    @Builder.Default private final int maxDegree = 1_000;
+    // nodes to collect at most, unlimited if 0
+    @Builder.Default private final long maxNodes = 0;
+
+    /** The nodes of the subgraph, the caller closes the bitmap. */
+    public OffHeapBitmap extract() {
+        final long start = currentTimeMillis();
+        final var nodes = new OffHeapBitmap(highestNodeId + 1);
+        var frontier = new OffHeapBitmap(highestNodeId + 1);
+        try {
+            addSeeds(nodes, frontier);
+            println("Seed nodes: %,d", nodes.cardinality());
+            final Flusher flusher = newFlusher(sourceDb);
+            for (int hop = 1; hop <= hops && frontier.cardinality() > 0 && !full(nodes); hop++) {
+                final var next = new OffHeapBitmap(highestNodeId + 1);
+                long supernodes = 0;
+                long visited = 0;
+                for (long id = frontier.nextSetBit(0); id >= 0 && !full(nodes); ) {
+                    if (!expand(id, nodes, next)) {
+                        supernodes++;
+                    }
+                    if (++visited % 10_000 == 0) {
+                        flusher.flush();
+                    }
+                    id = frontier.nextSetBit(id + 1);
+                }
+                flusher.flush();
+                frontier.close();
+                frontier = next;
+                println(
+                        "Hop %d: %,d node(s) in total, %,d new, %,d supernode(s) not expanded",
+                        hop, nodes.cardinality(), next.cardinality(), supernodes);
+            }
+            if (full(nodes)) {
+                println("Stopped at the limit of %,d node(s)", maxNodes);
+            }
+            final var FMT = "Collected %,d node(s) in %d seconds, %,d MB off heap";
+            final long seconds = (currentTimeMillis() - start) / 1000;
+            println(FMT, nodes.cardinality(), seconds, nodes.allocated() / (1024 * 1024));
+            return nodes;
+        } catch (RuntimeException e) {
+            nodes.close();
+            throw e;
+        } finally {
+            frontier.close();
+        }
+    }
+
+    boolean full(OffHeapBitmap nodes) {
+        return maxNodes > 0 && nodes.cardinality() >= maxNodes;
+    }
+
+    void addSeeds(OffHeapBitmap nodes, OffHeapBitmap frontier) {
+        if (null != seedIds) {
+            for (long id : readIds(seedIds)) {
+                if (id <= highestNodeId && sourceDb.nodeExists(id)) {
+                    add(id, nodes, frontier);
+                }
+            }
+        }
+        if (seedLabels.isEmpty() && seedProperties.isEmpty()) {
+            return;
+        }
+        // labels and properties can only be found by reading every node
+        final Flusher flusher = newFlusher(sourceDb);
+        long progress = currentTimeMillis();
+        for (long id = 0; id <= highestNodeId && !full(nodes); id++) {
+            try {
+                if (sourceDb.nodeExists(id) && isSeed(id)) {
+                    add(id, nodes, frontier);
+                }
+            } catch (Exception e) {
+                log.error("Failed to read, node ID: {} Message: {}", id, e.getMessage());
+            }
+            if (id % 20_000 == 0) {
+                flusher.flush();
+            }
+            final long now = currentTimeMillis();
+            if ((now - progress) > 1000) {
+                progress = now;
+                progressPercentage(id, highestNodeId);
+            }
+        }
+        progressPercentage(highestNodeId, highestNodeId);
+    }
+
+    boolean isSeed(long id) {
+        for (Label label : sourceDb.getNodeLabels(id)) {
+            if (seedLabels.contains(label.name())) {
+                return true;
+            }
+        }
+        if (seedProperties.isEmpty()) {
+            return false;
+        }
+        final var properties = sourceDb.getNodeProperties(id);
+        for (Map.Entry<String, String> e : seedProperties.entrySet()) {
+            final Object value = properties.get(e.getKey());
+            if (null != value && Objects.equals(e.getValue(), String.valueOf(value))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    void add(long id, OffHeapBitmap nodes, OffHeapBitmap frontier) {
+        if (!full(nodes) && nodes.set(id)) {
+            frontier.set(id);
+        }
+    }
+
+    /**
+     * Add the neighbours of the node to the next hop.
+     *
+     * @return false if the node has too many relationships to expand
+     */
+    boolean expand(long id, OffHeapBitmap nodes, OffHeapBitmap next) {
+        // the neighbours are only added once the degree is known to be under the cap
+        long[] neighbours = new long[16];
+        int n = 0;
+        try {
+            for (BatchRelationship rel : sourceDb.getRelationships(id)) {
+                if (!relationshipTypes.isEmpty()
+                        && !relationshipTypes.contains(rel.getType().name())) {
+                    continue;
+                }
+                if (n == maxDegree) {
+                    return false;
+                }
+                if (n == neighbours.length) {
+                    neighbours = Arrays.copyOf(neighbours, n * 2);
+                }
+                neighbours[n++] = rel.getStartNode() == id ? rel.getEndNode() : rel.getStartNode();
+            }
+        } catch (Exception e) {
+            log.error("Failed to expand, node ID: {} Message: {}", id, e.getMessage());
+            return true;
+        }
+        for (int i = 0; i < n; i++) {
+            add(neighbours[i], nodes, next);
+        }
+        return true;
+    }
+
+    /** One node ID per line, blank lines and lines starting with '#' are skipped. */
+    static long[] readIds(File file) {
+        long[] ids = new long[1024];
+        int n = 0;
+        try (final var rdr = new BufferedReader(new FileReader(file))) {
+            String line;
+            while (null != (line = rdr.readLine())) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                if (n == ids.length) {
+                    ids = Arrays.copyOf(ids, n * 2);
+                }
+                ids[n++] = Long.parseLong(line);
+            }
+        } catch (IOException ioe) {
+            throw new IllegalStateException(ioe);
+        } catch (NumberFormatException nfe) {
+            throw new IllegalArgumentException("Invalid node ID in " + file, nfe);
+        }
+        return Arrays.copyOf(ids, n);
+    }
+}
@@ -30,5 +30,7 @@ public class Bucket {
     }
 
     Size size;
+    // estimated population work of all the batches
+    long cost;
     @Singular List<IndexBatch> batches;
 }
@@ -0,0 +1,30 @@
+/*
+ * Copyright 2002 Brinqa, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neo4j.tool.dto;
+
+import java.util.Map;
+import lombok.Builder;
+import lombok.Singular;
+import lombok.Value;
+
+/** Number of nodes per label and relationships per type, from the count store. */
+@Value
+@Builder(toBuilder = true)
+public class EntityCounts {
+
+    @Singular Map<String, Long> labels;
+    @Singular Map<String, Long> types;
+}
@@ -32,4 +32,6 @@ public class IndexData {
     List<String> labelsOrTypes;
     List<String> properties;
     String indexProvider;
+    // why the provider was chosen, when it was chosen by the dump
+    String providerReason;
 }
@@ -0,0 +1,42 @@
+/*
+ * Copyright 2002 Brinqa, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neo4j.tool.dto;
+
+import lombok.Builder;
+import lombok.Value;
+
+/** How long the population of an index took, kept to plan later runs. */
+@Value
+@Builder(toBuilder = true)
+public class PopulationStats {
+    String name;
+    String labelOrType;
+    String indexProvider;
+    boolean uniqueness;
+    // entities of the label or type, -1 if unknown
+    long entities;
+    int properties;
+    long durationMillis;
+    boolean online;
+
+    /** Index entries populated per second, 0 if the size is unknown. */
+    public double entriesPerSecond() {
+        if (entities < 0 || durationMillis <= 0) {
+            return 0d;
+        }
+        return entities * Math.max(1, properties) * 1000d / durationMillis;
+    }
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright 2002 Brinqa, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neo4j.tool.dto;
+
+import lombok.Builder;
+import lombok.Value;
+
+/** Statistics of the sampled values of an indexed property. */
+@Value
+@Builder(toBuilder = true)
+public class PropertyStats {
+    String property;
+    long sampled;
+    long distinct;
+    // string values only
+    long strings;
+    double averageLength;
+    long maxLength;
+    // UTF-8 bytes of the longest string, exact for ASCII, 4 bytes per character otherwise
+    long maxBytes;
+    long longValues;
+
+    public double longShare() {
+        return strings == 0 ? 0d : (double) longValues / strings;
+    }
+
+    public double cardinality() {
+        return sampled == 0 ? 0d : (double) distinct / sampled;
+    }
+}
@@ -1,53 +1,71 @@
 package org.neo4j.tool.index;
 
-import com.google.common.collect.Lists;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 import org.apache.commons.lang3.tuple.Pair;
 import org.neo4j.tool.dto.Bucket;
 import org.neo4j.tool.dto.Bucket.Size;
 import org.neo4j.tool.dto.IndexBatch;
 import org.neo4j.tool.dto.IndexData;
 
+/**
+ * Packs indexes into batches of about the same population work, see {@link IndexCostModel}. Each
+ * batch is created together and waited on before the next, so the cost ceiling bounds the work the
+ * server does at once.
+ */
 public class BucketBuilder {
 
-    public static List<Bucket> build(List<Pair<IndexData, Long>> pairs) {
-        final Map<Size, ArrayList<IndexData>> map = new HashMap<>();
-        for (Pair<IndexData, Long> pair : pairs) {
-            final var size = toSize(pair.getValue());
-            final var l = map.computeIfAbsent(size, na -> new ArrayList<>());
-            l.add(pair.getKey());
-        }
+    public static final long DEFAULT_MAX_COST = 100_000_000L;
 
-        // break up into buckets
-        return map.entrySet().stream()
-                .flatMap(e -> toBuckets(e.getKey(), e.getValue()))
-                .collect(Collectors.toList());
+    public static List<Bucket> build(List<Pair<IndexData, Long>> pairs) {
+        return build(pairs, IndexCostModel.DEFAULT, DEFAULT_MAX_COST);
     }
 
-    static Stream<Bucket> toBuckets(Bucket.Size size, List<IndexData> values) {
-        return Lists.partition(values, toBatchSize(size)).stream().map(b -> toBucket(size, b));
+    /**
+     * First fit decreasing, each index goes in the first batch with room for it, the most expensive
+     * indexes first. An index over the ceiling gets a batch of its own.
+     */
+    public static List<Bucket> build(
+            List<Pair<IndexData, Long>> pairs, IndexCostModel model, long maxCost) {
+        final List<Bin> bins = new ArrayList<>();
+        final List<Pair<Pair<IndexData, Long>, Long>> costs =
+                pairs.stream()
+                        .map(p -> Pair.of(p, model.cost(p.getKey(), p.getValue())))
+                        .sorted((a, b) -> Long.compare(b.getValue(), a.getValue()))
+                        .collect(Collectors.toList());
+        for (Pair<Pair<IndexData, Long>, Long> entry : costs) {
+            final long cost = entry.getValue();
+            final var bin =
+                    bins.stream()
+                            .filter(b -> b.cost + cost <= maxCost)
+                            .findFirst()
+                            .orElseGet(
+                                    () -> {
+                                        final var b = new Bin();
+                                        bins.add(b);
+                                        return b;
+                                    });
+            bin.add(entry.getKey(), cost);
+        }
+        return bins.stream().map(Bin::toBucket).collect(Collectors.toList());
     }
 
-    static Bucket toBucket(Bucket.Size size, List<IndexData> values) {
-        final var batch = IndexBatch.builder().indexes(values).build();
-        return Bucket.builder().size(size).batch(batch).build();
-    }
+    static class Bin {
+        final List<IndexData> indexes = new ArrayList<>();
+        long cost = 0L;
+        long largest = 0L;
+
+        void add(Pair<IndexData, Long> pair, long cost) {
+            indexes.add(pair.getKey());
+            this.cost += cost;
+            this.largest = Math.max(largest, pair.getValue());
+        }
 
-    static int toBatchSize(Size size) {
-        switch (size) {
-            case SMALL:
-                return 200;
-            case MEDIUM:
-                return 50;
-            case LARGE:
-                return 4;
+        Bucket toBucket() {
+            final var batch = IndexBatch.builder().indexes(indexes).build();
+            return Bucket.builder().size(toSize(largest)).cost(cost).batch(batch).build();
         }
-        throw new IllegalArgumentException("Unsupported batch size: " + size);
     }
 
     static Size toSize(long total) {
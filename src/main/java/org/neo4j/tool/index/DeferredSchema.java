@@ -0,0 +1,122 @@
+/*
+ * Copyright 2002 Brinqa, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neo4j.tool.index;
+
+import static org.neo4j.tool.util.Print.println;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.neo4j.batchinsert.BatchInserter;
+import org.neo4j.graphdb.Label;
+import org.neo4j.internal.helpers.collection.Iterables;
+import org.neo4j.tool.dto.IndexData;
+
+/**
+ * Registers the indexes and constraints of a dump file on a batch inserter, they're populated in
+ * one pass over the store when the inserter shuts down.
+ *
+ * <p>The batch inserter only supports single label node indexes and uniqueness constraints using
+ * the configured default index provider. Anything else is written to a remaining dump file to load
+ * with <code>loadIndex</code> once the database is running.
+ */
+@Slf4j
+@AllArgsConstructor
+public class DeferredSchema {
+
+    private final String defaultProvider;
+
+    public void apply(BatchInserter db, File dumpFile) {
+        apply(List.of(db), dumpFile);
+    }
+
+    /** Register the schema on every target, the remaining dump file is written once for all. */
+    public void apply(List<BatchInserter> dbs, File dumpFile) {
+        final var remaining = new ArrayList<IndexData>();
+        int registered = 0;
+        for (IndexData index : IndexManager.readIndexesFromFile(dumpFile)) {
+            if (!supported(index)) {
+                remaining.add(index);
+                continue;
+            }
+            boolean failed = false;
+            for (BatchInserter db : dbs) {
+                try {
+                    register(db, index);
+                } catch (Exception e) {
+                    final var name = index.getName();
+                    log.error("Failed to register index: {} Message: {}", name, e.getMessage());
+                    failed = true;
+                }
+            }
+            if (failed) {
+                remaining.add(index);
+            } else {
+                registered++;
+            }
+        }
+        println("Registered %d deferred index(es) and constraint(s) from %s", registered, dumpFile);
+        if (!remaining.isEmpty()) {
+            final var file = remainingFile(dumpFile);
+            IndexManager.writeIndexes(remaining, file);
+            println("%d index(es) left for loadIndex, written to %s", remaining.size(), file);
+        }
+    }
+
+    boolean supported(IndexData index) {
+        if (index.getLabelsOrTypes() == null || index.getLabelsOrTypes().size() != 1) {
+            return false;
+        }
+        if (index.getEntityType() != null && !"NODE".equalsIgnoreCase(index.getEntityType())) {
+            return false;
+        }
+        if (index.getType() != null && !"BTREE".equalsIgnoreCase(index.getType())) {
+            return false;
+        }
+        // the batch inserter always uses the default provider
+        if (index.getIndexProvider() != null && !index.getIndexProvider().equals(defaultProvider)) {
+            println(
+                    "Index '%s' uses provider '%s', leaving it for loadIndex",
+                    index.getName(),
+                    index.getIndexProvider());
+            return false;
+        }
+        return !index.isUniqueness() || index.getProperties().size() == 1;
+    }
+
+    void register(BatchInserter db, IndexData index) {
+        final var label = Label.label(Iterables.first(index.getLabelsOrTypes()));
+        if (index.isUniqueness()) {
+            db.createDeferredConstraint(label)
+                    .assertPropertyIsUnique(Iterables.first(index.getProperties()))
+                    .withName(index.getName())
+                    .create();
+            return;
+        }
+        var creator = db.createDeferredSchemaIndex(label);
+        for (String property : index.getProperties()) {
+            creator = creator.on(property);
+        }
+        creator.withName(index.getName()).create();
+    }
+
+    static File remainingFile(File dumpFile) {
+        final var name = dumpFile.getName().replaceFirst("\\.json$", "");
+        return new File(dumpFile.getAbsoluteFile().getParentFile(), name + ".remaining.json");
+    }
+}
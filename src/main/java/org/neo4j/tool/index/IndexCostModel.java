@@ -0,0 +1,53 @@
+/*
+ * Copyright 2002 Brinqa, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neo4j.tool.index;
+
+import lombok.Builder;
+import lombok.Value;
+import org.neo4j.tool.dto.IndexData;
+
+/**
+ * Estimates the population work of an index. The entries are the entities of the label or type
+ * times the properties of the index, weighted by how expensive the provider is to populate and
+ * whether every entry is checked for uniqueness.
+ */
+@Value
+@Builder
+public class IndexCostModel {
+
+    public static final IndexCostModel DEFAULT = IndexCostModel.builder().build();
+
+    @Builder.Default double btreeWeight = 1.0;
+    // Lucene analyses and merges segments as it populates
+    @Builder.Default double luceneWeight = 2.0;
+    @Builder.Default double uniquenessWeight = 1.5;
+    // creating an index and waiting for it costs something even for an empty label
+    @Builder.Default long minimumCost = 1_000;
+
+    public long cost(IndexData index, long entities) {
+        final int properties = Math.max(1, index.getProperties().size());
+        double cost = (double) entities * properties * providerWeight(index);
+        if (index.isUniqueness()) {
+            cost *= uniquenessWeight;
+        }
+        return Math.max(minimumCost, (long) cost);
+    }
+
+    double providerWeight(IndexData index) {
+        final var provider = index.getIndexProvider();
+        return null != provider && provider.startsWith("lucene") ? luceneWeight : btreeWeight;
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright 2002 Brinqa, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neo4j.tool.index;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.neo4j.tool.dto.IndexData;
+
+/**
+ * Append only journal of an index rebuild, one JSON entry per line. An index is written when it's
+ * started and again when it's online, so a resumed rebuild skips the completed indexes and redoes
+ * the ones that were in progress, even if they were dropped and never created.
+ *
+ * <p>A torn last line from a crash is ignored.
+ */
+@Slf4j
+public class IndexJournal implements AutoCloseable {
+
+    public enum Event {
+        STARTED,
+        DONE
+    }
+
+    @AllArgsConstructor
+    static class Entry {
+        Event event;
+        IndexData index;
+    }
+
+    private final Gson gson = new GsonBuilder().create();
+    private final File file;
+    private final Set<String> done = new TreeSet<>();
+    private final Map<String, IndexData> inProgress = new LinkedHashMap<>();
+    private final BufferedWriter writer;
+
+    public IndexJournal(File file) {
+        this.file = file;
+        if (file.isFile()) {
+            read();
+        }
+        try {
+            this.writer = new BufferedWriter(new FileWriter(file, true));
+            if (tornLine()) {
+                writer.newLine();
+            }
+        } catch (IOException ioe) {
+            throw new IllegalStateException(ioe);
+        }
+    }
+
+    void read() {
+        try (final var rdr = new BufferedReader(new FileReader(file))) {
+            for (String line = rdr.readLine(); line != null; line = rdr.readLine()) {
+                final Entry entry;
+                try {
+                    entry = gson.fromJson(line, Entry.class);
+                } catch (JsonParseException e) {
+                    log.warn("Ignoring journal entry: {}", line);
+                    continue;
+                }
+                if (null == entry || null == entry.index || null == entry.event) {
+                    continue;
+                }
+                final var name = entry.index.getName();
+                if (Event.DONE == entry.event) {
+                    done.add(name);
+                    inProgress.remove(name);
+                } else {
+                    inProgress.put(name, entry.index);
+                }
+            }
+        } catch (IOException ioe) {
+            throw new IllegalStateException(ioe);
+        }
+    }
+
+    /** Test if the journal ends part way through an entry. */
+    boolean tornLine() throws IOException {
+        if (file.length() == 0) {
+            return false;
+        }
+        try (final var raf = new RandomAccessFile(file, "r")) {
+            raf.seek(file.length() - 1);
+            return raf.read() != '\n';
+        }
+    }
+
+    public boolean isDone(String name) {
+        return done.contains(name);
+    }
+
+    public int doneCount() {
+        return done.size();
+    }
+
+    /** Indexes that were started but not completed when the last run stopped. */
+    public Collection<IndexData> inProgress() {
+        return inProgress.values();
+    }
+
+    public void started(IndexData index) {
+        append(Event.STARTED, index);
+    }
+
+    public void done(IndexData index) {
+        append(Event.DONE, index);
+    }
+
+    synchronized void append(Event event, IndexData index) {
+        try {
+            writer.write(gson.toJson(new Entry(event, index)));
+            writer.newLine();
+            writer.flush();
+        } catch (IOException ioe) {
+            throw new IllegalStateException(ioe);
+        }
+        if (Event.DONE == event) {
+            done.add(index.getName());
+            inProgress.remove(index.getName());
+        } else {
+            inProgress.put(index.getName(), index);
+        }
+    }
+
+    /** Remove the journal once the rebuild has completed. */
+    public void delete() {
+        close();
+        if (!file.delete()) {
+            log.warn("Unable to delete journal: {}", file);
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            writer.close();
+        } catch (IOException ioe) {
+            log.warn("Unable to close journal: {}", file, ioe);
+        }
+    }
+}
@@ -28,39 +28,53 @@ import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Optional;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.TimeUnit;
 import java.util.function.UnaryOperator;
 import java.util.stream.Collectors;
-import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.neo4j.driver.AccessMode;
 import org.neo4j.driver.Driver;
 import org.neo4j.driver.Record;
-import org.neo4j.driver.Result;
-import org.neo4j.driver.Session;
 import org.neo4j.driver.SessionConfig;
-import org.neo4j.driver.Transaction;
-import org.neo4j.driver.TransactionWork;
 import org.neo4j.driver.Value;
+import org.neo4j.driver.async.AsyncSession;
+import org.neo4j.driver.async.ResultCursor;
 import org.neo4j.driver.summary.ResultSummary;
 import org.neo4j.internal.helpers.collection.Iterables;
 import org.neo4j.tool.VersionQuery;
 import org.neo4j.tool.VersionQuery.Neo4jVersion;
 import org.neo4j.tool.dto.Bucket;
-import org.neo4j.tool.dto.ConstraintStatus;
+import org.neo4j.tool.dto.EntityCounts;
 import org.neo4j.tool.dto.IndexBatch;
 import org.neo4j.tool.dto.IndexData;
 import org.neo4j.tool.dto.IndexStatus;
 import org.neo4j.tool.dto.IndexStatus.State;
+import org.neo4j.tool.dto.PropertyStats;
 
 @Slf4j
-@AllArgsConstructor
-public class IndexManager {
+public class IndexManager implements AutoCloseable {
 
     private final Driver driver;
+    private final IndexStatusPoller poller;
+    private final PopulationTracker tracker = new PopulationTracker();
+
+    public IndexManager(Driver driver) {
+        this.driver = driver;
+        this.poller = new IndexStatusPoller(driver, tracker);
+    }
+
+    /** Progress and duration of the indexes created by this manager. */
+    public PopulationTracker getTracker() {
+        return tracker;
+    }
 
     static IndexData fromRecord(Record record) {
         return IndexData.builder()
@@ -81,7 +95,7 @@ public class IndexManager {
         return (null == value || value.isNull()) ? List.of() : value.asList(Value::asString);
     }
 
-    public List<IndexData> readIndexesFromFile(File f) {
+    public static List<IndexData> readIndexesFromFile(File f) {
         final var ret = new ArrayList<IndexData>();
         final var gson = new GsonBuilder().create();
         try (final var rdr = new BufferedReader(new FileReader(f))) {
@@ -104,21 +118,6 @@ public class IndexManager {
             log.error("Failed to create index: {}", query, th);
             throw new RuntimeException(th);
         }
-        if (!validIndex(index)) {
-            println("Failed to create index: %s", index.getName());
-        }
-    }
-
-    boolean validIndex(final IndexData index) {
-        // insure index creation started
-        for (int i = 0; i < 10; i++) {
-            final var status = indexProgress(index.getName());
-            if (null != status && status.getState().isOk()) {
-                return true;
-            }
-            simpleWait(10);
-        }
-        return false;
     }
 
     private void simpleWait(long milliseconds) {
@@ -129,138 +128,213 @@ public class IndexManager {
         }
     }
 
-    void monitorCreation(final IndexData index) {
+    boolean monitorCreation(final IndexData index, boolean progress) {
+        return monitorCreation(index, poller.await(index), progress);
+    }
+
+    /**
+     * Wait for the index to come online.
+     *
+     * @param index index or constraint to wait for
+     * @param future status of the index from the poller, registered once per creation
+     * @param progress print a progress bar, only one index can be shown at a time
+     * @return false if the index failed
+     */
+    boolean monitorCreation(
+            final IndexData index,
+            final CompletableFuture<IndexStatus> future,
+            boolean progress) {
         println("Monitoring: %s", index.getName());
-        // wait for completion
-        int pct = 0;
-        while (pct < 100) {
-            progressPercentage(pct);
-            final var status = indexProgress(index.getName());
-            if (status.getState().isFailed()) {
-                println("%nFailed to create index: %s", index.getName());
-                return;
-            }
-            pct = (int) status.getProgress();
-            progressPercentage(pct);
+        while (progress && !future.isDone()) {
+            progressPercentage((int) poller.progress(index.getName()));
             simpleWait(100);
         }
-
-        // index creation is finished
-        if (!index.isUniqueness()) {
-            return;
+        final IndexStatus status = await(future);
+        if (status.getState().isFailed()) {
+            println("%nFailed to create index: %s", index.getName());
+            return false;
         }
-
-        // loop waiting for a bit for it to be created fail after 10 secs
-        for (int i = 0; i < 100; i++) {
-            final var status = constraintCheck(index.getName());
-            if (status.isOnline()) {
-                return;
-            }
-            simpleWait(100);
+        if (progress) {
+            progressPercentage(100);
         }
-        final var ERROR_FMT = "Constraint '%s' failed to come online, please create manually.";
-        throw new IllegalStateException(String.format(ERROR_FMT, index.getName()));
+        return true;
     }
 
     void writeTransaction(final String query) {
-        // query for all the indexes
-        try (final Session session = driver.session()) {
-            assert session != null;
-            ResultSummary resultSummary = session.writeTransaction(tx -> tx.run(query).consume());
-            if (log.isDebugEnabled()) {
-                log.debug(resultSummary.toString());
-            }
+        final ResultSummary resultSummary = await(writeAsync(List.of(query)));
+        if (log.isDebugEnabled()) {
+            log.debug(resultSummary.toString());
         }
     }
 
-    <T> T readTransaction(TransactionWork<T> work) {
-        // query for all the indexes
+    /**
+     * Run the statements in one write transaction. All of them are sent without waiting on the
+     * previous result, so the transaction costs one round trip rather than one per statement.
+     *
+     * @return summary of the last statement
+     */
+    CompletionStage<ResultSummary> writeAsync(List<String> queries) {
+        final AsyncSession session = driver.asyncSession();
+        final CompletionStage<ResultSummary> ret =
+                session.writeTransactionAsync(
+                        tx -> {
+                            final List<CompletableFuture<ResultSummary>> results =
+                                    new ArrayList<>();
+                            for (String query : queries) {
+                                final var summary =
+                                        tx.runAsync(query).thenCompose(ResultCursor::consumeAsync);
+                                results.add(summary.toCompletableFuture());
+                            }
+                            final var all = results.toArray(CompletableFuture[]::new);
+                            return CompletableFuture.allOf(all)
+                                    .thenApply(na -> results.isEmpty() ? null : last(results));
+                        });
+        return closeAfter(session, ret);
+    }
+
+    static ResultSummary last(List<CompletableFuture<ResultSummary>> results) {
+        return results.get(results.size() - 1).join();
+    }
+
+    CompletionStage<List<Record>> readAsync(String query, Map<String, Object> params) {
+        return readAsync(driver, query, params);
+    }
+
+    /** Run a query in its own read transaction, the session is closed once it completes. */
+    static CompletionStage<List<Record>> readAsync(
+            Driver driver, String query, Map<String, Object> params) {
         final var cfg = SessionConfig.builder().withDefaultAccessMode(AccessMode.READ).build();
-        try (final Session session = driver.session(cfg)) {
-            assert session != null;
-            return session.readTransaction(work);
+        final AsyncSession session = driver.asyncSession(cfg);
+        final CompletionStage<List<Record>> ret =
+                session.readTransactionAsync(
+                        tx -> tx.runAsync(query, params).thenCompose(ResultCursor::listAsync));
+        return closeAfter(session, ret);
+    }
+
+    static <T> CompletionStage<T> closeAfter(AsyncSession session, CompletionStage<T> stage) {
+        return stage.handle((r, e) -> session.closeAsync())
+                .thenCompose(closed -> closed)
+                .thenCompose(na -> stage);
+    }
+
+    /** Wait for the result, rethrowing the cause of a failure. */
+    public static <T> T await(CompletionStage<T> stage) {
+        try {
+            return stage.toCompletableFuture().join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
         }
     }
 
-    String createConstraintFormat(Neo4jVersion version) {
+    String createConstraintFormat(Neo4jVersion version, boolean nodeKey) {
+        final var assertion = nodeKey ? "IS NODE KEY" : "IS UNIQUE";
         switch (version) {
             case v4_2:
             case v4_3:
-                return "CREATE CONSTRAINT `%s` IF NOT EXISTS ON (n:`%s`) ASSERT n.%s IS UNIQUE";
+                return "CREATE CONSTRAINT `%s` IF NOT EXISTS ON (n:`%s`) ASSERT %s " + assertion;
             case v4_4:
-                return "CREATE CONSTRAINT `%s` IF NOT EXISTS FOR (n:`%s`) REQUIRE n.%s IS UNIQUE;";
+                return "CREATE CONSTRAINT `%s` IF NOT EXISTS FOR (n:`%s`) REQUIRE %s "
+                        + assertion
+                        + ";";
             default:
                 throw new IllegalArgumentException("Unsupported version: " + version);
         }
     }
 
-    String indexQuery(IndexData indexData) {
+    String indexQuery(Neo4jVersion version, IndexData indexData) {
         final String name = indexData.getName();
-        final String label = Iterables.firstOrNull(indexData.getLabelsOrTypes());
-
-        // create an index
-        final String IDX_FMT =
-                "CREATE INDEX %s IF NOT EXISTS FOR (n:`%s`) ON (%s) OPTIONS { indexProvider: '%s' };";
-        final String indexProvider = indexData.getIndexProvider();
+        final boolean relationship = isRelationship(indexData);
+        final String variable = relationship ? "r" : "n";
+        final String tokens =
+                indexData.getLabelsOrTypes().stream()
+                        .map(t -> "`" + escape(t) + "`")
+                        .collect(joining("|"));
+        final String pattern =
+                relationship
+                        ? String.format("()-[r:%s]-()", tokens)
+                        : String.format("(n:%s)", tokens);
         // make sure to quote all the properties of an index
-        final UnaryOperator<String> propFx = p -> "n.`" + p + "`";
+        final UnaryOperator<String> propFx = p -> variable + ".`" + escape(p) + "`";
         final String properties =
                 indexData.getProperties().stream().map(propFx).collect(joining(","));
-        return String.format(IDX_FMT, name, label, properties, indexProvider);
+        if (relationship && Neo4jVersion.v4_2 == version) {
+            throw new IllegalArgumentException("Relationship indexes need Neo4j 4.3: " + name);
+        }
+
+        final String type = null == indexData.getType() ? "BTREE" : indexData.getType();
+        switch (type.toUpperCase()) {
+            case "FULLTEXT":
+                if (Neo4jVersion.v4_2 == version) {
+                    return fulltextProcedure(indexData, relationship);
+                }
+                final String FT_FMT =
+                        "CREATE FULLTEXT INDEX `%s` IF NOT EXISTS FOR %s ON EACH [%s];";
+                return String.format(FT_FMT, name, pattern, properties);
+            case "TEXT":
+                if (Neo4jVersion.v4_4 != version) {
+                    throw new IllegalArgumentException("Text indexes need Neo4j 4.4: " + name);
+                }
+                final String TXT_FMT = "CREATE TEXT INDEX `%s` IF NOT EXISTS FOR %s ON (%s);";
+                return String.format(TXT_FMT, name, pattern, properties);
+            default:
+                break;
+        }
+
+        // a b-tree index covers one label or relationship type, composite or not
+        if (indexData.getLabelsOrTypes().size() != 1) {
+            throw new IllegalArgumentException("Index has more than one label or type: " + name);
+        }
+        final String IDX_FMT = "CREATE INDEX `%s` IF NOT EXISTS FOR %s ON (%s)";
+        final String indexProvider = indexData.getIndexProvider();
+        final String options =
+                null == indexProvider
+                        ? ""
+                        : String.format(" OPTIONS { indexProvider: '%s' }", indexProvider);
+        return String.format(IDX_FMT, name, pattern, properties) + options + ";";
+    }
+
+    /** Neo4j 4.2 only creates full-text indexes with a procedure. */
+    String fulltextProcedure(IndexData indexData, boolean relationship) {
+        final var FMT = "CALL db.index.fulltext.create%sIndex('%s', [%s], [%s]);";
+        final UnaryOperator<String> quote = v -> "'" + v.replace("'", "\\'") + "'";
+        return String.format(
+                FMT,
+                relationship ? "Relationship" : "Node",
+                indexData.getName().replace("'", "\\'"),
+                indexData.getLabelsOrTypes().stream().map(quote).collect(joining(",")),
+                indexData.getProperties().stream().map(quote).collect(joining(",")));
     }
 
     String constraintQuery(Neo4jVersion version, IndexData indexData) {
         final String name = indexData.getName();
-        final String label = Iterables.firstOrNull(indexData.getLabelsOrTypes());
+        final String label = escape(Iterables.firstOrNull(indexData.getLabelsOrTypes()));
 
-        // create constraint
-        final String format = createConstraintFormat(version);
-        final String firstProp = Iterables.firstOrNull(indexData.getProperties());
-        return String.format(format, name, label, firstProp);
+        // several properties can only be a node key in 4.x
+        final var props = indexData.getProperties();
+        final boolean nodeKey = props.size() > 1;
+        final String format = createConstraintFormat(version, nodeKey);
+        final UnaryOperator<String> propFx = p -> "n.`" + escape(p) + "`";
+        final String properties =
+                nodeKey
+                        ? "(" + props.stream().map(propFx).collect(joining(", ")) + ")"
+                        : propFx.apply(Iterables.firstOrNull(props));
+        return String.format(format, name, label, properties);
     }
 
     public String indexOrConstraintQuery(Neo4jVersion version, IndexData indexData) {
         return indexData.isUniqueness()
                 ? constraintQuery(version, indexData)
-                : indexQuery(indexData);
-    }
-
-    IndexStatus indexProgress(String name) {
-        // query for all the indexes
-        try (final Session session = driver.session()) {
-            assert session != null;
-            return session.readTransaction(tx -> toIndexState(tx, name));
-        }
+                : indexQuery(version, indexData);
     }
 
-    ConstraintStatus constraintCheck(String name) {
-        // query for all the indexes
-        try (final Session session = driver.session()) {
-            assert session != null;
-            return session.readTransaction(tx -> toConstraintStatus(tx, name));
-        }
+    public static boolean isRelationship(IndexData indexData) {
+        return "RELATIONSHIP".equalsIgnoreCase(indexData.getEntityType());
     }
 
-    ConstraintStatus toConstraintStatus(Transaction tx, String name) {
-        final String FMT = "show constraints yield name WHERE name = \"%s\"";
-        final var result = tx.run(String.format(FMT, name));
-        final var record = Iterables.firstOrNull(result.list());
-        return ConstraintStatus.of(null != record);
-    }
-
-    IndexStatus toIndexState(Transaction tx, String name) {
-        final String FMT = "show indexes yield populationPercent,state,name WHERE name = \"%s\"";
-        final var result = tx.run(String.format(FMT, name));
-        final var record = Iterables.firstOrNull(result.list());
-        if (null == record) {
-            return IndexStatus.builder().state(State.FAILED).build();
-        }
-        final var pct = record.get("populationPercent").asFloat();
-        final var state = record.get("state").asString("");
-        return IndexStatus.builder().progress(pct).state(toState(state)).build();
-    }
-
-    IndexStatus.State toState(String state) {
+    static IndexStatus.State toState(String state) {
         if (state.equalsIgnoreCase("FAILED")) {
             return State.FAILED;
         }
@@ -273,7 +347,7 @@ public class IndexManager {
         return State.OTHER;
     }
 
-    public void writeIndexes(List<IndexData> indexes, File file) {
+    public static void writeIndexes(List<IndexData> indexes, File file) {
         final var gson = new GsonBuilder().create();
         try (final var wrt = new BufferedWriter(new FileWriter(file))) {
             for (IndexData index : indexes) {
@@ -287,19 +361,12 @@ public class IndexManager {
 
     /** Read all the index and constraints in order, of constrains first. */
     public List<IndexData> readDBIndexes() {
-        try (Session session = driver.session()) {
-            assert session != null;
-            return session.readTransaction(
-                    tx -> {
-                        final var result = tx.run("show indexes;");
-                        return result.list().stream()
-                                .map(IndexManager::fromRecord)
-                                .collect(Collectors.toList());
-                    });
-        }
+        return await(readAsync("show indexes;", Map.of())).stream()
+                .map(IndexManager::fromRecord)
+                .collect(Collectors.toList());
     }
 
-    String dropQuery(final IndexData data) {
+    public String dropQuery(final IndexData data) {
         final var FMT =
                 (data.isUniqueness() ? "DROP CONSTRAINT %s" : "DROP INDEX %s") + " IF EXISTS;";
         return String.format(FMT, data.getName());
@@ -317,51 +384,196 @@ public class IndexManager {
         }
     }
 
+    /** Drop the indexes, every drop is sent at once in its own transaction. */
+    public void dropIndexes(final Collection<IndexData> indexes) {
+        final List<CompletableFuture<?>> drops = new ArrayList<>();
+        for (IndexData index : indexes) {
+            final var query = dropQuery(index);
+            println(query);
+            final var drop =
+                    writeAsync(List.of(query))
+                            .exceptionally(
+                                    th -> {
+                                        log.error("Failed to drop index: {}", query, th);
+                                        return null;
+                                    });
+            drops.add(drop.toCompletableFuture());
+        }
+        CompletableFuture.allOf(drops.toArray(CompletableFuture[]::new)).join();
+    }
+
+    /** Drop the indexes together in one transaction. */
+    public void dropTogether(final Collection<IndexData> indexes) {
+        if (indexes.isEmpty()) {
+            return;
+        }
+        final List<String> queries = new ArrayList<>();
+        for (IndexData index : indexes) {
+            final var query = dropQuery(index);
+            println(query);
+            queries.add(query);
+        }
+        await(writeAsync(queries));
+    }
+
     public Set<String> readIndexNames() {
         return readDBIndexes().stream().map(IndexData::getName).collect(toUnmodifiableSet());
     }
 
-    public void createAndMonitor(Neo4jVersion version, IndexData index, boolean recreate) {
+    /** Create the index showing its progress, false if the index failed. */
+    public boolean createAndMonitor(Neo4jVersion version, IndexData index, boolean recreate) {
         if (recreate) {
             dropIndex(index);
         }
         createIndex(version, index);
-        monitorCreation(index);
+        return monitorCreation(index, true);
+    }
+
+    /** Create the index and wait for it, safe to call for several indexes at once. */
+    public void createAndAwait(Neo4jVersion version, IndexData index) {
+        createIndex(version, index);
+        if (!monitorCreation(index, false)) {
+            throw new IllegalStateException("Failed to create index: " + index.getName());
+        }
+        println("Online: %s", index.getName());
+    }
+
+    /** Guard against overwhelming the server, see {@link ServerGuard}. */
+    public ServerGuard newGuard(double maxHeap, double maxGc) {
+        return new ServerGuard(driver, maxHeap, maxGc);
     }
 
     public Neo4jVersion determineVersion() {
         return VersionQuery.determineVersion(driver);
     }
 
-    public long labelSize(String labelName) {
-        final String FMT = "MATCH (n:`%s`) return count(n) as count";
-        return this.readTransaction(
-                tx -> {
-                    final Result result = tx.run(String.format(FMT, labelName));
-                    return Optional.ofNullable(Iterables.firstOrNull(result.list()))
-                            .map(r -> r.get(0).asLong(0L))
-                            .orElse(0L);
-                });
+    /**
+     * Count the nodes of each label and the relationships of each type in one read transaction.
+     * Each count is a separate branch of a union, so all of them are answered by the count store.
+     */
+    public EntityCounts entityCounts(Collection<String> labels, Collection<String> types) {
+        // count before adding the names, a count with grouping keys can't use the count store
+        final var NODE_FMT =
+                "MATCH (n:`%s`) WITH count(n) AS count RETURN 'NODE' AS kind, $%s AS name, count";
+        final var REL_FMT =
+                "MATCH ()-[r:`%s`]->() WITH count(r) AS count "
+                        + "RETURN 'RELATIONSHIP' AS kind, $%s AS name, count";
+        final var counts = EntityCounts.builder();
+        if (labels.isEmpty() && types.isEmpty()) {
+            return counts.build();
+        }
+        final List<String> queries = new ArrayList<>();
+        final Map<String, Object> params = new HashMap<>();
+        for (String label : labels) {
+            final var param = "p" + params.size();
+            params.put(param, label);
+            queries.add(String.format(NODE_FMT, escape(label), param));
+        }
+        for (String type : types) {
+            final var param = "p" + params.size();
+            params.put(param, type);
+            queries.add(String.format(REL_FMT, escape(type), param));
+        }
+        for (Record r : await(readAsync(String.join(" UNION ALL ", queries), params))) {
+            final var name = r.get("name").asString();
+            final var count = r.get("count").asLong(0L);
+            if ("NODE".equals(r.get("kind").asString())) {
+                counts.label(name, count);
+            } else {
+                counts.type(name, count);
+            }
+        }
+        return counts.build();
+    }
+
+    /**
+     * Sample the values of a property of a label or relationship type, only strings contribute to
+     * the lengths. Several samples can be in flight at once.
+     *
+     * @param longLength strings longer than this are counted as long values
+     */
+    public CompletionStage<PropertyStats> sampleProperty(
+            String entityType, String labelOrType, String property, int limit, long longLength) {
+        final var NODE_FMT = "MATCH (e:`%s`) WHERE e.`%s` IS NOT NULL ";
+        final var REL_FMT = "MATCH ()-[e:`%s`]->() WHERE e.`%s` IS NOT NULL ";
+        final var SAMPLE =
+                "WITH e.`%s` AS v LIMIT $limit "
+                        + "WITH v, CASE WHEN v =~ '(?s).*' THEN v END AS s "
+                        + "RETURN count(v) AS sampled, count(DISTINCT v) AS distinct, "
+                        + "count(s) AS strings, avg(size(s)) AS avgLength, "
+                        + "max(size(s)) AS maxLength, "
+                        + "max(CASE WHEN s =~ $ascii THEN 1 ELSE 4 END * size(s)) "
+                        + "AS maxBytes, "
+                        + "sum(CASE WHEN size(s) > $long THEN 1 ELSE 0 END) AS longValues";
+        final var match = "RELATIONSHIP".equalsIgnoreCase(entityType) ? REL_FMT : NODE_FMT;
+        final var query =
+                String.format(match, escape(labelOrType), escape(property))
+                        + String.format(SAMPLE, escape(property));
+        final var params =
+                Map.<String, Object>of("limit", limit, "long", longLength, "ascii", "\\p{ASCII}*");
+        return readAsync(query, params)
+                .thenApply(
+                        records -> {
+                            final var r = records.get(0);
+                            return PropertyStats.builder()
+                                    .property(property)
+                                    .sampled(r.get("sampled").asLong(0L))
+                                    .distinct(r.get("distinct").asLong(0L))
+                                    .strings(r.get("strings").asLong(0L))
+                                    .averageLength(r.get("avgLength").asDouble(0d))
+                                    .maxLength(r.get("maxLength").asLong(0L))
+                                    .maxBytes(r.get("maxBytes").asLong(0L))
+                                    .longValues(r.get("longValues").asLong(0L))
+                                    .build();
+                        });
+    }
+
+    static String escape(String name) {
+        return name.replace("`", "``");
+    }
+
+    public static EntityCounts readCounts(File file) {
+        final var gson = new GsonBuilder().create();
+        try (final var rdr = new BufferedReader(new FileReader(file))) {
+            return gson.fromJson(rdr, EntityCounts.class);
+        } catch (IOException ioe) {
+            throw new IllegalStateException(ioe);
+        }
+    }
+
+    public static void writeCounts(EntityCounts counts, File file) {
+        final var gson = new GsonBuilder().setPrettyPrinting().create();
+        try (final var wrt = new BufferedWriter(new FileWriter(file))) {
+            gson.toJson(counts, wrt);
+        } catch (IOException ioe) {
+            throw new IllegalStateException(ioe);
+        }
     }
 
     /** Create all the indexes in one transaction for the bucket. */
     public void create(final Neo4jVersion version, final Bucket bucket) {
         for (final IndexBatch batch : bucket.getBatches()) {
             // send all the commands
-            try (final Session s = driver.session()) {
-                final Transaction tx = s.beginTransaction();
-                for (IndexData index : batch.getIndexes()) {
-                    final var q = indexOrConstraintQuery(version, index);
-                    println(q);
-                    tx.run(q);
-                }
-                tx.commit();
-            } catch (Exception e) {
-                throw new RuntimeException(e);
+            final List<String> queries = new ArrayList<>();
+            for (IndexData index : batch.getIndexes()) {
+                final var q = indexOrConstraintQuery(version, index);
+                println(q);
+                queries.add(q);
+            }
+            await(writeAsync(queries));
+
+            // monitor the indexes, all of them are polled together
+            final List<IndexData> indexes = batch.getIndexes();
+            final List<CompletableFuture<IndexStatus>> futures = new ArrayList<>();
+            indexes.forEach(index -> futures.add(poller.await(index)));
+            for (int i = 0; i < indexes.size(); i++) {
+                monitorCreation(indexes.get(i), futures.get(i), true);
             }
-
-            // monitor the indexes
-            batch.getIndexes().forEach(this::monitorCreation);
         }
     }
+
+    @Override
+    public void close() {
+        poller.close();
+    }
 }
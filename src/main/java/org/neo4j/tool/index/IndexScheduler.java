@@ -0,0 +1,203 @@
+/*
+ * Copyright 2002 Brinqa, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neo4j.tool.index;
+
+import static org.neo4j.tool.util.Print.println;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.tuple.Pair;
+import org.neo4j.tool.dto.IndexData;
+
+/**
+ * Keeps several index populations in flight, weighted by the number of entities to index. The next
+ * index starts as soon as the ones in flight leave enough room, largest first, with smaller indexes
+ * filling the gaps. An index heavier than the whole budget is only built on its own.
+ */
+@Slf4j
+public class IndexScheduler {
+
+    // how long to wait for a population before checking the throttle again
+    static final long PAUSE = 1_000L;
+
+    // times an index is retried after the server restarted during its population
+    static final int MAX_RETRIES = 2;
+
+    /** Decides whether the server can take another population. */
+    public interface Throttle {
+        Throttle NONE =
+                new Throttle() {
+                    @Override
+                    public boolean admit() {
+                        return true;
+                    }
+
+                    @Override
+                    public long restarts() {
+                        return 0L;
+                    }
+                };
+
+        /** Test if another population can start. */
+        boolean admit();
+
+        /** Number of server restarts seen so far. */
+        long restarts();
+    }
+
+    private final Consumer<IndexData> build;
+    private final int maxInFlight;
+    private final long maxWeight;
+    private final Throttle throttle;
+
+    /**
+     * @param build creates an index and waits for it to come online
+     * @param maxInFlight maximum number of indexes populating at once
+     * @param maxWeight maximum total weight of the indexes populating at once
+     */
+    public IndexScheduler(Consumer<IndexData> build, int maxInFlight, long maxWeight) {
+        this(build, maxInFlight, maxWeight, Throttle.NONE);
+    }
+
+    /**
+     * @param throttle pauses new populations while the server is under pressure, each restart of
+     *     the server halves the concurrency
+     */
+    public IndexScheduler(
+            Consumer<IndexData> build, int maxInFlight, long maxWeight, Throttle throttle) {
+        if (maxInFlight < 1 || maxWeight < 1) {
+            throw new IllegalArgumentException("Concurrency and weight must be positive.");
+        }
+        this.build = build;
+        this.maxInFlight = maxInFlight;
+        this.maxWeight = maxWeight;
+        this.throttle = throttle;
+    }
+
+    /** Weight of an index, an empty label still costs a population. */
+    static long weight(Pair<IndexData, Long> pair) {
+        return Math.max(1L, pair.getValue());
+    }
+
+    /**
+     * Build all the indexes, returns once every index is online or failed.
+     *
+     * @param sizes indexes with the number of entities they cover
+     * @return number of indexes that failed
+     */
+    public int run(List<Pair<IndexData, Long>> sizes) {
+        final var pending = new LinkedList<>(sizes);
+        pending.sort(Comparator.comparingLong(IndexScheduler::weight).reversed());
+
+        final var executor = Executors.newFixedThreadPool(maxInFlight);
+        final var completion = new ExecutorCompletionService<Pair<IndexData, Long>>(executor);
+        final Map<String, Long> startedAt = new HashMap<>();
+        final Map<String, Integer> retries = new HashMap<>();
+        int limit = maxInFlight;
+        long restarts = throttle.restarts();
+        int inFlight = 0;
+        long inFlightWeight = 0L;
+        int failed = 0;
+        try {
+            while (!pending.isEmpty() || inFlight > 0) {
+                final boolean admit = throttle.admit();
+                if (throttle.restarts() > restarts) {
+                    restarts = throttle.restarts();
+                    limit = Math.max(1, limit / 2);
+                    println("Server restarted, lowering concurrency to %d", limit);
+                }
+
+                // start everything that fits
+                final var it = pending.iterator();
+                while (admit && inFlight < limit && it.hasNext()) {
+                    final var next = it.next();
+                    final long weight = weight(next);
+                    if (inFlight > 0 && inFlightWeight + weight > maxWeight) {
+                        continue;
+                    }
+                    it.remove();
+                    inFlight++;
+                    inFlightWeight += weight;
+                    startedAt.put(next.getKey().getName(), restarts);
+                    println(
+                            "Starting '%s' (weight %d), in flight: %d weight: %d",
+                            next.getKey().getName(), weight, inFlight, inFlightWeight);
+                    completion.submit(() -> build(next));
+                }
+
+                // wait for one to finish to free up capacity, checking the throttle in between
+                final var done = completion.poll(PAUSE, TimeUnit.MILLISECONDS);
+                if (null == done) {
+                    continue;
+                }
+                try {
+                    final var pair = done.get();
+                    inFlight--;
+                    inFlightWeight -= weight(pair);
+                } catch (ExecutionException e) {
+                    // the pair isn't returned on failure, so recover it from the exception
+                    final var pair = ((BuildException) e.getCause()).pair;
+                    inFlight--;
+                    inFlightWeight -= weight(pair);
+                    final var name = pair.getKey().getName();
+                    if (throttle.restarts() > startedAt.get(name)
+                            && retries.merge(name, 1, Integer::sum) <= MAX_RETRIES) {
+                        println("Server restarted while building '%s', retrying", name);
+                        pending.addFirst(pair);
+                        continue;
+                    }
+                    failed++;
+                    log.error("Failed to build index: {}", name, e.getCause().getCause());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } finally {
+            executor.shutdownNow();
+        }
+        println("Built %d index(es), %d failed.", sizes.size() - failed, failed);
+        return failed;
+    }
+
+    Pair<IndexData, Long> build(Pair<IndexData, Long> pair) {
+        try {
+            build.accept(pair.getKey());
+            return pair;
+        } catch (Throwable t) {
+            // errors too, the pair is needed to account for the index
+            throw new BuildException(pair, t);
+        }
+    }
+
+    static class BuildException extends RuntimeException {
+        final transient Pair<IndexData, Long> pair;
+
+        BuildException(Pair<IndexData, Long> pair, Throwable cause) {
+            super(cause);
+            this.pair = pair;
+        }
+    }
+}
@@ -0,0 +1,245 @@
+/*
+ * Copyright 2002 Brinqa, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neo4j.tool.index;
+
+import static java.lang.System.currentTimeMillis;
+import static org.neo4j.tool.index.IndexManager.readAsync;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import lombok.extern.slf4j.Slf4j;
+import org.neo4j.driver.Driver;
+import org.neo4j.driver.Record;
+import org.neo4j.tool.dto.IndexData;
+import org.neo4j.tool.dto.IndexStatus;
+import org.neo4j.tool.dto.IndexStatus.State;
+
+/**
+ * Polls the status of every index being waited on with one query per interval, instead of a
+ * session and a query per index. The interval backs off while the populations make no progress and
+ * resets as soon as one does.
+ *
+ * <p>Polling errors are logged and retried on the next interval, the server is often busy while
+ * indexes populate.
+ */
+@Slf4j
+public class IndexStatusPoller implements AutoCloseable {
+
+    static final long MIN_INTERVAL = 100L;
+    static final long MAX_INTERVAL = 5_000L;
+
+    // polls an index may be missing for, right after it's created
+    static final int MAX_MISSING = 10;
+
+    // time for a constraint to appear once its index is online
+    static final long CONSTRAINT_TIMEOUT = 10_000L;
+
+    static final String INDEX_QUERY =
+            "SHOW INDEXES YIELD name, state, populationPercent WHERE name IN $names "
+                    + "RETURN name, state, populationPercent";
+    static final String CONSTRAINT_QUERY =
+            "SHOW CONSTRAINTS YIELD name WHERE name IN $names RETURN name";
+
+    private final Driver driver;
+    private final PopulationTracker tracker;
+    private final Map<String, Pending> pending = new ConcurrentHashMap<>();
+
+    private ScheduledExecutorService executor;
+    private boolean scheduled = false;
+    private long interval = MIN_INTERVAL;
+
+    public IndexStatusPoller(Driver driver, PopulationTracker tracker) {
+        this.driver = driver;
+        this.tracker = tracker;
+    }
+
+    static class Pending {
+        final IndexData index;
+        final CompletableFuture<IndexStatus> future = new CompletableFuture<>();
+        volatile float progress = 0f;
+        int missing = 0;
+        long onlineAt = -1L;
+
+        Pending(IndexData index) {
+            this.index = index;
+        }
+    }
+
+    /**
+     * Wait for the index to come online, and for its constraint if it backs one.
+     *
+     * @return completes with the final status, exceptionally if a constraint never appears
+     */
+    public synchronized CompletableFuture<IndexStatus> await(IndexData index) {
+        final var entry =
+                pending.computeIfAbsent(
+                        index.getName(),
+                        na -> {
+                            tracker.started(index, currentTimeMillis());
+                            return new Pending(index);
+                        });
+        interval = MIN_INTERVAL;
+        if (!scheduled) {
+            scheduled = true;
+            executor().schedule(this::poll, MIN_INTERVAL, TimeUnit.MILLISECONDS);
+        }
+        return entry.future;
+    }
+
+    /** Last known population percentage of an index being waited on. */
+    public float progress(String name) {
+        final var entry = pending.get(name);
+        return null == entry ? 100f : entry.progress;
+    }
+
+    ScheduledExecutorService executor() {
+        if (null == executor) {
+            executor =
+                    Executors.newSingleThreadScheduledExecutor(
+                            r -> {
+                                final var thread = new Thread(r, "index-status-poller");
+                                thread.setDaemon(true);
+                                return thread;
+                            });
+        }
+        return executor;
+    }
+
+    synchronized boolean idle() {
+        if (pending.isEmpty()) {
+            scheduled = false;
+            return true;
+        }
+        return false;
+    }
+
+    void poll() {
+        if (idle()) {
+            return;
+        }
+        boolean changed = false;
+        try {
+            changed = update();
+        } catch (Exception e) {
+            log.warn("Unable to poll index status: {}", e.getMessage());
+        }
+        tracker.report(currentTimeMillis());
+        synchronized (this) {
+            interval = changed ? MIN_INTERVAL : Math.min(MAX_INTERVAL, interval * 3 / 2);
+            executor().schedule(this::poll, interval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /** Query the status of all the pending indexes, true if any of them made progress. */
+    boolean update() {
+        final var names = List.copyOf(pending.keySet());
+        final var waiting =
+                pending.values().stream()
+                        .filter(p -> p.index.isUniqueness())
+                        .map(p -> p.index.getName())
+                        .collect(Collectors.toList());
+
+        // both queries are in flight together rather than one after the other
+        final var indexQuery = readAsync(driver, INDEX_QUERY, Map.of("names", names));
+        final CompletionStage<List<Record>> constraintQuery =
+                waiting.isEmpty()
+                        ? CompletableFuture.completedFuture(List.of())
+                        : readAsync(driver, CONSTRAINT_QUERY, Map.of("names", waiting));
+        final Map<String, Record> indexes = new HashMap<>();
+        for (Record r : IndexManager.await(indexQuery)) {
+            indexes.put(r.get("name").asString(), r);
+        }
+        final Set<String> constraints = new HashSet<>();
+        for (Record r : IndexManager.await(constraintQuery)) {
+            constraints.add(r.get("name").asString());
+        }
+        boolean changed = false;
+        for (String name : names) {
+            changed |= apply(pending.get(name), indexes.get(name), constraints.contains(name));
+        }
+        return changed;
+    }
+
+    boolean apply(Pending entry, Record record, boolean constraint) {
+        final var name = entry.index.getName();
+        if (null == record) {
+            if (++entry.missing >= MAX_MISSING) {
+                complete(entry, IndexStatus.builder().state(State.FAILED).build());
+                return true;
+            }
+            return false;
+        }
+        entry.missing = 0;
+        final var state = IndexManager.toState(record.get("state").asString(""));
+        final var progress = record.get("populationPercent").asFloat(0f);
+        final boolean changed = progress != entry.progress;
+        entry.progress = progress;
+        tracker.progress(name, progress, currentTimeMillis());
+        final var status = IndexStatus.builder().state(state).progress(progress).build();
+        if (state.isFailed()) {
+            complete(entry, status);
+            return true;
+        }
+        if (State.ONLINE != state) {
+            return changed;
+        }
+        if (!entry.index.isUniqueness() || constraint) {
+            complete(entry, status);
+            return true;
+        }
+
+        // the index is online, give the constraint a moment to appear
+        final long now = currentTimeMillis();
+        if (entry.onlineAt < 0) {
+            entry.onlineAt = now;
+        } else if (now - entry.onlineAt > CONSTRAINT_TIMEOUT) {
+            pending.remove(name);
+            tracker.finished(name, false, now);
+            final var ERROR_FMT = "Constraint '%s' failed to come online, please create manually.";
+            entry.future.completeExceptionally(
+                    new IllegalStateException(String.format(ERROR_FMT, name)));
+            return true;
+        }
+        return changed;
+    }
+
+    void complete(Pending entry, IndexStatus status) {
+        pending.remove(entry.index.getName());
+        final boolean online = State.ONLINE == status.getState();
+        tracker.finished(entry.index.getName(), online, currentTimeMillis());
+        entry.future.complete(status);
+    }
+
+    @Override
+    public synchronized void close() {
+        if (null != executor) {
+            executor.shutdownNow();
+        }
+        final var error = new IllegalStateException("Index status poller closed.");
+        pending.values().forEach(p -> p.future.completeExceptionally(error));
+        pending.clear();
+    }
+}
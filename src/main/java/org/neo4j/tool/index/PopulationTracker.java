@@ -0,0 +1,276 @@
+/*
+ * Copyright 2002 Brinqa, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neo4j.tool.index;
+
+import static org.neo4j.tool.util.Print.println;
+
+import com.google.gson.GsonBuilder;
+import com.google.gson.reflect.TypeToken;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import lombok.Value;
+import org.apache.commons.lang3.time.DurationFormatUtils;
+import org.neo4j.internal.helpers.collection.Iterables;
+import org.neo4j.tool.dto.IndexData;
+import org.neo4j.tool.dto.PopulationStats;
+
+/**
+ * Keeps the population progress of each index over time. With the size of the labels it reports
+ * the entries populated per second and the time left for each index and for the whole run.
+ *
+ * <p>The rate of an index is measured over its last few samples, populations slow down and speed
+ * up as the server's load changes.
+ */
+public class PopulationTracker {
+
+    static final int HISTORY = 20;
+    static final long REPORT_INTERVAL = 30_000L;
+
+    @Value
+    static class Sample {
+        long time;
+        float percent;
+    }
+
+    static class Population {
+        final IndexData index;
+        final long entities;
+        final long startedAt;
+        final Deque<Sample> samples = new ArrayDeque<>();
+
+        Population(IndexData index, long entities, long startedAt) {
+            this.index = index;
+            this.entities = entities;
+            this.startedAt = startedAt;
+            samples.add(new Sample(startedAt, 0f));
+        }
+
+        synchronized void add(Sample sample) {
+            samples.addLast(sample);
+            while (samples.size() > HISTORY) {
+                samples.removeFirst();
+            }
+        }
+
+        long entries() {
+            return entities < 0 ? -1 : entities * Math.max(1, index.getProperties().size());
+        }
+
+        synchronized float percent() {
+            return samples.getLast().getPercent();
+        }
+
+        /** Entries per second over the recent samples, 0 until there's been progress. */
+        synchronized double rate() {
+            final var first = samples.getFirst();
+            final var last = samples.getLast();
+            final long elapsed = last.getTime() - first.getTime();
+            if (entries() < 0 || elapsed <= 0) {
+                return 0d;
+            }
+            return (last.getPercent() - first.getPercent()) / 100d * entries() * 1000d / elapsed;
+        }
+
+        long remaining() {
+            return entries() < 0 ? 0 : (long) (entries() * (100d - percent()) / 100d);
+        }
+    }
+
+    // indexes with a known size that are going to populate
+    private final Map<String, Population> expected = new ConcurrentHashMap<>();
+    private final Map<String, Population> active = new ConcurrentHashMap<>();
+    private final List<PopulationStats> completed = new ArrayList<>();
+    private long lastReport = 0L;
+
+    /** Register the size of an index, before it's created. */
+    public void expect(IndexData index, long entities) {
+        expected.put(index.getName(), new Population(index, entities, -1L));
+    }
+
+    public void started(IndexData index, long now) {
+        final var planned = expected.get(index.getName());
+        final long entities = null == planned ? -1L : planned.entities;
+        active.put(index.getName(), new Population(index, entities, now));
+    }
+
+    public void progress(String name, float percent, long now) {
+        final var population = active.get(name);
+        if (null != population) {
+            population.add(new Sample(now, percent));
+        }
+    }
+
+    public void finished(String name, boolean online, long now) {
+        final var population = active.remove(name);
+        if (null == population) {
+            return;
+        }
+        expected.remove(name);
+        final var index = population.index;
+        final var stats =
+                PopulationStats.builder()
+                        .name(name)
+                        .labelOrType(Iterables.firstOrNull(index.getLabelsOrTypes()))
+                        .indexProvider(index.getIndexProvider())
+                        .uniqueness(index.isUniqueness())
+                        .entities(population.entities)
+                        .properties(index.getProperties().size())
+                        .durationMillis(now - population.startedAt)
+                        .online(online)
+                        .build();
+        synchronized (completed) {
+            completed.add(stats);
+        }
+    }
+
+    public List<PopulationStats> getCompleted() {
+        synchronized (completed) {
+            return List.copyOf(completed);
+        }
+    }
+
+    /** Entries per second across all the populating indexes. */
+    double rate() {
+        return active.values().stream().mapToDouble(Population::rate).sum();
+    }
+
+    /** Entries left in the populating indexes and the ones not started yet. */
+    long remaining() {
+        long ret = active.values().stream().mapToLong(Population::remaining).sum();
+        for (Population p : expected.values()) {
+            if (!active.containsKey(p.index.getName())) {
+                ret += Math.max(0, p.entries());
+            }
+        }
+        return ret;
+    }
+
+    /** Print the rate and time left at most once per interval. */
+    public void report(long now) {
+        synchronized (this) {
+            if (now - lastReport < REPORT_INTERVAL || active.isEmpty()) {
+                return;
+            }
+            lastReport = now;
+        }
+        final double rate = rate();
+        println(
+                "%nPopulating %d index(es) at %,.0f entries/s, run ETA: %s",
+                active.size(), rate, eta(remaining(), rate));
+        for (Population p : active.values()) {
+            println(
+                    "  %s: %.1f%% at %,.0f entries/s, ETA: %s",
+                    p.index.getName(), p.percent(), p.rate(), eta(p.remaining(), p.rate()));
+        }
+    }
+
+    /** Duration and rate of every index, slowest first. */
+    public void printSummary() {
+        final var stats = new ArrayList<>(getCompleted());
+        stats.sort((a, b) -> Long.compare(b.getDurationMillis(), a.getDurationMillis()));
+        println("%-40s %15s %12s %15s", "Index", "Entities", "Duration", "Entries/s");
+        for (PopulationStats s : stats) {
+            println(
+                    "%-40s %,15d %12s %,15.0f%s",
+                    s.getName(),
+                    s.getEntities(),
+                    duration(s.getDurationMillis()),
+                    s.entriesPerSecond(),
+                    s.isOnline() ? "" : " FAILED");
+        }
+    }
+
+    static String eta(long remaining, double rate) {
+        if (remaining <= 0) {
+            return duration(0);
+        }
+        return rate <= 0 ? "unknown" : duration((long) (remaining * 1000d / rate));
+    }
+
+    static String duration(long millis) {
+        return DurationFormatUtils.formatDuration(millis, "HH:mm:ss");
+    }
+
+    /**
+     * Estimate how long the indexes take from the rates of a previous run, by provider where the
+     * previous run had one and overall otherwise.
+     *
+     * @return milliseconds, -1 if there's nothing to estimate from
+     */
+    public static long estimate(Collection<PopulationStats> history, Map<IndexData, Long> sizes) {
+        final Map<String, double[]> byProvider = new HashMap<>();
+        final double[] overall = new double[2];
+        for (PopulationStats s : history) {
+            if (!s.isOnline() || s.getEntities() < 0 || s.getDurationMillis() <= 0) {
+                continue;
+            }
+            final double entries = (double) s.getEntities() * Math.max(1, s.getProperties());
+            final var totals =
+                    byProvider.computeIfAbsent(s.getIndexProvider(), na -> new double[2]);
+            totals[0] += entries;
+            totals[1] += s.getDurationMillis();
+            overall[0] += entries;
+            overall[1] += s.getDurationMillis();
+        }
+        if (overall[0] <= 0 || overall[1] <= 0) {
+            return -1;
+        }
+        double millis = 0d;
+        for (Map.Entry<IndexData, Long> e : sizes.entrySet()) {
+            final var index = e.getKey();
+            var totals = byProvider.getOrDefault(index.getIndexProvider(), overall);
+            if (totals[0] <= 0) {
+                totals = overall;
+            }
+            final int properties = Math.max(1, index.getProperties().size());
+            final double entries = (double) e.getValue() * properties;
+            millis += entries * totals[1] / totals[0];
+        }
+        return (long) millis;
+    }
+
+    public static List<PopulationStats> readStats(File file) {
+        final var gson = new GsonBuilder().create();
+        final var type = new TypeToken<List<PopulationStats>>() {}.getType();
+        try (final var rdr = new BufferedReader(new FileReader(file))) {
+            final List<PopulationStats> ret = gson.fromJson(rdr, type);
+            return null == ret ? List.of() : ret;
+        } catch (IOException ioe) {
+            throw new IllegalStateException(ioe);
+        }
+    }
+
+    public static void writeStats(List<PopulationStats> stats, File file) {
+        final var gson = new GsonBuilder().setPrettyPrinting().create();
+        try (final var wrt = new BufferedWriter(new FileWriter(file))) {
+            gson.toJson(stats, wrt);
+        } catch (IOException ioe) {
+            throw new IllegalStateException(ioe);
+        }
+    }
+}
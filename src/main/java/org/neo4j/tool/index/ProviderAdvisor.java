@@ -0,0 +1,114 @@
+/*
+ * Copyright 2002 Brinqa, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neo4j.tool.index;
+
+import java.util.List;
+import lombok.Builder;
+import lombok.Value;
+import org.neo4j.tool.dto.IndexData;
+import org.neo4j.tool.dto.PropertyStats;
+
+/**
+ * Chooses between the native B-tree and the Lucene backed provider from sampled property values.
+ * Long strings make large B-tree keys, they bloat the index and anything over the key size limit
+ * can't be indexed at all, while Lucene stores them without a limit. Lucene also stores each
+ * distinct value once, where the B-tree repeats the key for every entity, so long values that
+ * repeat a lot are cheaper in Lucene.
+ *
+ * <p>Cypher only gives the length of a string in characters, the key limit is in bytes. A string
+ * with any character outside ASCII is taken as 4 bytes per character, the UTF-8 worst case, so a
+ * string is never let through to a B-tree key it doesn't fit.
+ */
+@Value
+@Builder
+public class ProviderAdvisor {
+
+    public static final String BTREE = "native-btree-1.0";
+    public static final String LUCENE = "lucene+native-3.0";
+
+    // longest string in UTF-8 bytes the B-tree can take as a key, with some room for the entity ID
+    @Builder.Default long maxKeyLength = 4_000;
+    // a string longer than this is a long value
+    @Builder.Default long longLength = 512;
+    // share of long values that moves the index to Lucene
+    @Builder.Default double longShare = 0.1;
+    // average length that moves the index to Lucene
+    @Builder.Default double averageLength = 256;
+    // share of distinct values under which the values repeat
+    @Builder.Default double lowCardinality = 0.01;
+    // average length from which repeated values move the index to Lucene
+    @Builder.Default double repeatedLength = 64;
+
+    /** The index with the chosen provider, and the reason it was chosen. */
+    public IndexData advise(IndexData index, List<PropertyStats> stats) {
+        if (index.isUniqueness()) {
+            return withReason(index, index.getIndexProvider(), "constraint, provider unchanged");
+        }
+        if (null != index.getType() && !"BTREE".equalsIgnoreCase(index.getType())) {
+            final var reason = index.getType().toLowerCase() + " index, provider unchanged";
+            return withReason(index, index.getIndexProvider(), reason);
+        }
+        for (PropertyStats s : stats) {
+            final String reason = luceneReason(s);
+            if (null != reason) {
+                return withReason(index, LUCENE, describe(s) + ", " + reason);
+            }
+        }
+        final var sb = new StringBuilder("values fit B-tree keys");
+        for (PropertyStats s : stats) {
+            sb.append("; ").append(describe(s));
+        }
+        return withReason(index, BTREE, sb.toString());
+    }
+
+    /** Reason to move the property to Lucene, null if the B-tree suits it. */
+    String luceneReason(PropertyStats s) {
+        if (s.getMaxBytes() > maxKeyLength) {
+            return String.format("max bytes over the %d key limit", maxKeyLength);
+        }
+        if (s.longShare() > longShare) {
+            return String.format(
+                    "%.0f%% of strings longer than %d (limit %.0f%%)",
+                    100 * s.longShare(), longLength, 100 * longShare);
+        }
+        if (s.getAverageLength() > averageLength) {
+            return String.format("average length over %.0f", averageLength);
+        }
+        if (s.cardinality() < lowCardinality && s.getAverageLength() > repeatedLength) {
+            return String.format(
+                    "under %.0f%% distinct with average length over %.0f",
+                    100 * lowCardinality, repeatedLength);
+        }
+        return null;
+    }
+
+    static String describe(PropertyStats s) {
+        return String.format(
+                "%s: sampled %d, distinct %.0f%%, avg length %.0f, max length %d (%d bytes),"
+                        + " long %.0f%%",
+                s.getProperty(),
+                s.getSampled(),
+                100 * s.cardinality(),
+                s.getAverageLength(),
+                s.getMaxLength(),
+                s.getMaxBytes(),
+                100 * s.longShare());
+    }
+
+    static IndexData withReason(IndexData index, String provider, String reason) {
+        return index.toBuilder().indexProvider(provider).providerReason(reason).build();
+    }
+}
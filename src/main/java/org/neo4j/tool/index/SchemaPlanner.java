@@ -0,0 +1,176 @@
+/*
+ * Copyright 2002 Brinqa, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neo4j.tool.index;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Collectors;
+import lombok.Value;
+import org.neo4j.tool.dto.IndexData;
+
+/**
+ * Diffs the indexes of a dump file against the indexes of the database, so only the indexes that
+ * are missing or defined differently are dropped and created.
+ *
+ * <p>Indexes are matched by name first. An index with another name but the same schema is treated
+ * as the same index, Neo4j won't create a second index on the same schema and can't rename one.
+ */
+public class SchemaPlanner {
+
+    public enum Kind {
+        DROP,
+        CREATE
+    }
+
+    @Value
+    public static class Action {
+        Kind kind;
+        IndexData index;
+        String reason;
+    }
+
+    @Value
+    public static class Plan {
+        List<Action> actions;
+        // indexes of the dump already in the database as defined
+        List<IndexData> unchanged;
+        // indexes of the database that aren't in the dump, they're left alone
+        List<IndexData> extra;
+        // indexes of the dump that can't be created
+        List<IndexData> skipped;
+
+        public List<IndexData> drops() {
+            return indexes(Kind.DROP);
+        }
+
+        public List<IndexData> creates() {
+            return indexes(Kind.CREATE);
+        }
+
+        List<IndexData> indexes(Kind kind) {
+            return actions.stream()
+                    .filter(a -> kind == a.getKind())
+                    .map(Action::getIndex)
+                    .collect(Collectors.toList());
+        }
+
+        public boolean isEmpty() {
+            return actions.isEmpty();
+        }
+    }
+
+    /**
+     * @param wanted indexes of the dump file
+     * @param existing indexes of the database
+     * @param recreate drop and create every index of the dump, even if it's unchanged
+     */
+    public static Plan plan(List<IndexData> wanted, List<IndexData> existing, boolean recreate) {
+        final Map<String, IndexData> byName = new LinkedHashMap<>();
+        final Map<String, IndexData> bySchema = new HashMap<>();
+        for (IndexData index : existing) {
+            // token lookup indexes aren't dumped
+            if (index.getLabelsOrTypes().isEmpty()) {
+                continue;
+            }
+            byName.put(index.getName(), index);
+            bySchema.put(schema(index), index);
+        }
+
+        final List<Action> drops = new ArrayList<>();
+        final List<Action> creates = new ArrayList<>();
+        final List<IndexData> unchanged = new ArrayList<>();
+        final List<IndexData> skipped = new ArrayList<>();
+        for (IndexData index : wanted) {
+            if (index.getLabelsOrTypes().isEmpty()) {
+                skipped.add(index);
+                continue;
+            }
+            IndexData current = byName.remove(index.getName());
+            if (null == current) {
+                current = bySchema.get(schema(index));
+                if (null != current && null == byName.remove(current.getName())) {
+                    // already matched to another index of the dump
+                    current = null;
+                }
+            }
+            if (null == current) {
+                creates.add(new Action(Kind.CREATE, index, "missing"));
+                continue;
+            }
+            final String difference = recreate ? "recreate" : difference(index, current);
+            if (null == difference) {
+                unchanged.add(current);
+                continue;
+            }
+            drops.add(new Action(Kind.DROP, current, difference));
+            creates.add(new Action(Kind.CREATE, index, difference));
+        }
+
+        // all the drops go first, so an index can take the schema of a dropped one
+        final List<Action> actions = new ArrayList<>(drops);
+        actions.addAll(creates);
+        return new Plan(actions, unchanged, new ArrayList<>(byName.values()), skipped);
+    }
+
+    /** How the index of the database differs from the dump, null if it's the same. */
+    static String difference(IndexData wanted, IndexData current) {
+        if (wanted.isUniqueness() != current.isUniqueness()) {
+            return wanted.isUniqueness() ? "now a constraint" : "no longer a constraint";
+        }
+        if (!entityType(wanted).equals(entityType(current))) {
+            return "entity type";
+        }
+        if (!type(wanted).equals(type(current))) {
+            return "type " + type(current) + " -> " + type(wanted);
+        }
+        if (!wanted.getLabelsOrTypes().equals(current.getLabelsOrTypes())) {
+            return "labels " + current.getLabelsOrTypes() + " -> " + wanted.getLabelsOrTypes();
+        }
+        if (!wanted.getProperties().equals(current.getProperties())) {
+            return "properties " + current.getProperties() + " -> " + wanted.getProperties();
+        }
+        // a constraint is always created with the default provider
+        if (!wanted.isUniqueness()
+                && null != wanted.getIndexProvider()
+                && !Objects.equals(wanted.getIndexProvider(), current.getIndexProvider())) {
+            return "provider " + current.getIndexProvider() + " -> " + wanted.getIndexProvider();
+        }
+        return null;
+    }
+
+    static String schema(IndexData index) {
+        // a b-tree, text and full-text index can share a schema
+        return type(index)
+                + ":"
+                + entityType(index)
+                + ":"
+                + String.join(",", index.getLabelsOrTypes())
+                + ":"
+                + String.join(",", index.getProperties());
+    }
+
+    static String type(IndexData index) {
+        return null == index.getType() ? "BTREE" : index.getType().toUpperCase();
+    }
+
+    static String entityType(IndexData index) {
+        return null == index.getEntityType() ? "NODE" : index.getEntityType().toUpperCase();
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright 2002 Brinqa, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neo4j.tool.index;
+
+import static java.lang.System.currentTimeMillis;
+import static org.neo4j.tool.util.Print.println;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import org.neo4j.driver.AccessMode;
+import org.neo4j.driver.Driver;
+import org.neo4j.driver.Record;
+import org.neo4j.driver.SessionConfig;
+import org.neo4j.driver.Transaction;
+
+/**
+ * Watches the heap and garbage collection of the server through <code>dbms.queryJmx</code>, so new
+ * index populations are held back before Neo4j runs out of memory.
+ *
+ * <p>Restarts are detected by the connection dropping or by a new JVM start time, this is how the
+ * create, crash, create loop shows up from the outside.
+ */
+@Slf4j
+public class ServerGuard implements IndexScheduler.Throttle {
+
+    public static final double DEFAULT_MAX_HEAP = 0.85;
+    public static final double DEFAULT_MAX_GC = 0.2;
+
+    static final long SAMPLE_INTERVAL = 1_000L;
+
+    static final String MEMORY = "java.lang:type=Memory";
+    static final String GC = "java.lang:type=GarbageCollector,name=*";
+    static final String RUNTIME = "java.lang:type=Runtime";
+    static final String QUERY = "CALL dbms.queryJmx($query) YIELD attributes RETURN attributes";
+
+    private final Driver driver;
+    private final double maxHeap;
+    private final double maxGc;
+
+    private long lastSample = 0L;
+    private boolean lastAdmit = true;
+    private boolean down = false;
+    private long startTime = -1L;
+    private volatile long restarts = 0L;
+
+    // total collection time at the last sample, for the share of time spent collecting
+    private long gcTime = -1L;
+    private long gcSampledAt = -1L;
+
+    /**
+     * @param maxHeap share of the maximum heap in use above which populations are held back
+     * @param maxGc share of time spent collecting garbage above which populations are held back
+     */
+    public ServerGuard(Driver driver, double maxHeap, double maxGc) {
+        this.driver = driver;
+        this.maxHeap = maxHeap;
+        this.maxGc = maxGc;
+    }
+
+    @Value
+    static class Sample {
+        long heapUsed;
+        long heapMax;
+        long gcTime;
+        long startTime;
+
+        double heapRatio() {
+            return heapMax <= 0 ? 0d : (double) heapUsed / heapMax;
+        }
+    }
+
+    @Override
+    public synchronized boolean admit() {
+        final long now = currentTimeMillis();
+        if (now - lastSample < SAMPLE_INTERVAL) {
+            return lastAdmit;
+        }
+        lastSample = now;
+        final Sample sample;
+        try {
+            sample = sample();
+        } catch (Exception e) {
+            if (!down) {
+                down = true;
+                restarts++;
+                println("Server unavailable, holding back new indexes: %s", e.getMessage());
+            }
+            lastAdmit = false;
+            return false;
+        }
+        if (down) {
+            down = false;
+            println("Server is back, resuming.");
+        } else if (startTime >= 0 && sample.getStartTime() != startTime) {
+            restarts++;
+            println("Server restarted since the last check.");
+        }
+        startTime = sample.getStartTime();
+
+        final double gcRatio = gcRatio(sample.getGcTime(), now);
+        lastAdmit = !pressure(sample.heapRatio(), gcRatio);
+        if (!lastAdmit) {
+            println(
+                    "Server under pressure, heap: %d%% gc: %d%%, holding back new indexes",
+                    (int) (100 * sample.heapRatio()), (int) (100 * gcRatio));
+        }
+        return lastAdmit;
+    }
+
+    @Override
+    public long restarts() {
+        return restarts;
+    }
+
+    /** Block until the server can take another population. */
+    public void awaitAdmission() {
+        while (!admit()) {
+            try {
+                TimeUnit.MILLISECONDS.sleep(SAMPLE_INTERVAL);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    boolean pressure(double heapRatio, double gcRatio) {
+        return heapRatio > maxHeap || gcRatio > maxGc;
+    }
+
+    /** Share of the time since the last sample spent collecting garbage. */
+    double gcRatio(long totalGcTime, long now) {
+        double ratio = 0d;
+        if (gcTime >= 0 && now > gcSampledAt && totalGcTime >= gcTime) {
+            ratio = (double) (totalGcTime - gcTime) / (now - gcSampledAt);
+        }
+        gcTime = totalGcTime;
+        gcSampledAt = now;
+        return ratio;
+    }
+
+    Sample sample() {
+        final var cfg = SessionConfig.builder().withDefaultAccessMode(AccessMode.READ).build();
+        try (final var session = driver.session(cfg)) {
+            return session.readTransaction(
+                    tx -> {
+                        final var memory = attributes(tx, MEMORY);
+                        long collectionTime = 0L;
+                        for (Record r : tx.run(QUERY, Map.of("query", GC)).list()) {
+                            final var attributes = r.get("attributes").asMap();
+                            collectionTime += number(attributes, "CollectionTime", "value");
+                        }
+                        final var runtime = attributes(tx, RUNTIME);
+                        return new Sample(
+                                number(memory, "HeapMemoryUsage", "value", "properties", "used"),
+                                number(memory, "HeapMemoryUsage", "value", "properties", "max"),
+                                collectionTime,
+                                number(runtime, "StartTime", "value"));
+                    });
+        }
+    }
+
+    static Map<String, Object> attributes(Transaction tx, String bean) {
+        final var records = tx.run(QUERY, Map.of("query", bean)).list();
+        return records.isEmpty() ? Map.of() : records.get(0).get("attributes").asMap();
+    }
+
+    /** Read a number from the nested maps the JMX procedure returns, zero if it's not there. */
+    static long number(Map<String, Object> map, String... path) {
+        Object value = map;
+        for (String key : path) {
+            if (!(value instanceof Map)) {
+                return 0L;
+            }
+            value = ((Map<?, ?>) value).get(key);
+        }
+        return value instanceof Number ? ((Number) value).longValue() : 0L;
+    }
+}
@@ -26,12 +26,20 @@ import java.util.List;
 import java.util.Set;
 import lombok.Value;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.mutable.MutableLong;
+import org.apache.commons.lang3.mutable.MutableObject;
+import org.eclipse.collections.api.LongIterable;
+import org.eclipse.collections.api.block.procedure.primitive.LongProcedure;
 import org.neo4j.batchinsert.BatchInserter;
 import org.neo4j.batchinsert.BatchInserters;
 import org.neo4j.configuration.Config;
 import org.neo4j.configuration.GraphDatabaseSettings;
+import org.neo4j.dbms.api.DatabaseManagementService;
 import org.neo4j.dbms.api.DatabaseManagementServiceBuilder;
+import org.neo4j.graphdb.GraphDatabaseService;
 import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.NotFoundException;
+import org.neo4j.graphdb.Relationship;
 import org.neo4j.internal.helpers.collection.Iterables;
 import org.neo4j.internal.id.IdGeneratorFactory;
 import org.neo4j.io.layout.DatabaseLayout;
@@ -69,27 +77,112 @@ public class Neo4jHelper {
                 sourceDataDirectory);
 
         final var managementService = managementServiceBld.build();
-        final var graphDb = managementService.database(databaseName);
+        final var highestInfo = highestInfo(managementService.database(databaseName));
+        managementService.shutdown();
+        return highestInfo;
+    }
 
+    public static HighestInfo highestInfo(GraphDatabaseService graphDb) {
         final var api = (GraphDatabaseAPI) graphDb;
         final var idGenerators =
                 api.getDependencyResolver().resolveDependency(IdGeneratorFactory.class);
         long highestNodeId = idGenerators.get(NODE).getHighestPossibleIdInUse();
         long highestRelId = idGenerators.get(RELATIONSHIP).getHighestPossibleIdInUse();
-        managementService.shutdown();
-
         return HighestInfo.of(highestNodeId, highestRelId);
     }
 
+    /** Open the database embedded and read only, the caller shuts down the service. */
+    public static DatabaseManagementService openReadOnly(
+            Config config, File dataDirectory, String databaseName) {
+        final var home = config.get(GraphDatabaseSettings.neo4j_home);
+        final var managementServiceBld = new DatabaseManagementServiceBuilder(home);
+        managementServiceBld.setConfig(data_directory, dataDirectory.toPath());
+        managementServiceBld.setConfig(
+                GraphDatabaseSettings.read_only_databases, Set.of(databaseName));
+        println("Opening Neo4j Database read only: %s", dataDirectory);
+        return managementServiceBld.build();
+    }
+
+    /**
+     * Delete the records from a database, batch inserters can't delete so the database is opened
+     * embedded.
+     */
+    public static void deleteRecords(
+            Config config,
+            File dataDirectory,
+            String databaseName,
+            LongIterable nodeIds,
+            LongIterable relationshipIds) {
+        if (nodeIds.isEmpty() && relationshipIds.isEmpty()) {
+            return;
+        }
+        final var home = config.get(GraphDatabaseSettings.neo4j_home);
+        final var managementServiceBld = new DatabaseManagementServiceBuilder(home);
+        managementServiceBld.setConfig(data_directory, dataDirectory.toPath());
+        managementServiceBld.setConfig(GraphDatabaseSettings.read_only_databases, Set.of());
+        println("Opening Neo4j Database to delete records: %s", dataDirectory);
+
+        final var managementService = managementServiceBld.build();
+        try {
+            final var graphDb = managementService.database(databaseName);
+            final var count = new MutableLong();
+            final var tx = new MutableObject<>(graphDb.beginTx());
+            final LongProcedure commit =
+                    id -> {
+                        if (count.incrementAndGet() % 10_000 == 0) {
+                            tx.getValue().commit();
+                            tx.getValue().close();
+                            tx.setValue(graphDb.beginTx());
+                        }
+                    };
+            try {
+                relationshipIds.forEach(
+                        id -> {
+                            try {
+                                tx.getValue().getRelationshipById(id).delete();
+                            } catch (NotFoundException e) {
+                                // already removed along with a node
+                            }
+                            commit.value(id);
+                        });
+                nodeIds.forEach(
+                        id -> {
+                            try {
+                                final var node = tx.getValue().getNodeById(id);
+                                node.getRelationships().forEach(Relationship::delete);
+                                node.delete();
+                            } catch (NotFoundException e) {
+                                // already removed
+                            }
+                            commit.value(id);
+                        });
+                tx.getValue().commit();
+            } finally {
+                tx.getValue().close();
+            }
+            println(
+                    "Deleted %d node(s) and %d relationship(s)",
+                    nodeIds.size(),
+                    relationshipIds.size());
+        } finally {
+            managementService.shutdown();
+        }
+    }
+
     public static Label[] filterLabels(BatchInserter db, Set<String> ignoreLabels, long node) {
-        List<Label> labels = Iterables.asList(db.getNodeLabels(node));
+        return filterLabels(Iterables.asList(db.getNodeLabels(node)), ignoreLabels);
+    }
+
+    public static Label[] filterLabels(List<Label> labels, Set<String> ignoreLabels) {
         if (labels.isEmpty()) {
             return NO_LABELS;
         }
-        if (!ignoreLabels.isEmpty()) {
-            labels.removeIf(label -> ignoreLabels.contains(label.name()));
+        if (ignoreLabels.isEmpty()) {
+            return labels.toArray(NO_LABELS);
         }
-        return labels.toArray(new Label[0]);
+        return labels.stream()
+                .filter(label -> !ignoreLabels.contains(label.name()))
+                .toArray(Label[]::new);
     }
 
     public static int percent(Number part, Number total) {
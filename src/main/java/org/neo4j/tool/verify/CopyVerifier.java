@@ -0,0 +1,352 @@
+/*
+ * Copyright 2002 Brinqa, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neo4j.tool.verify;
+
+import static java.lang.System.currentTimeMillis;
+import static org.neo4j.tool.util.Print.println;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.LongFunction;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import lombok.AllArgsConstructor;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.NotFoundException;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.RelationshipType;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.internal.helpers.collection.Iterables;
+import org.neo4j.tool.copy.CopyTransform;
+import org.neo4j.tool.copy.RangeFingerprints;
+import org.neo4j.tool.util.Neo4jHelper.HighestInfo;
+
+/**
+ * Compares a copy with its source. Counts per label and relationship type come from the count
+ * store, so they cost the same for any size of store. Mapped records are then sampled at random
+ * on all the threads and compared by checksum, until the samples or the time budget run out.
+ * Without a relationship mapping, a sampled relationship is looked for between the copies of its
+ * nodes instead.
+ *
+ * <p>Copies filter records, so a target count lower than the source is expected, a higher count or
+ * a dropped label that is still present is not.
+ */
+@AllArgsConstructor
+public class CopyVerifier {
+
+    // attempts per sample, unmapped IDs are skipped without counting as a sample
+    private static final int MAX_ATTEMPTS = 10;
+
+    private final GraphDatabaseService sourceDb;
+    private final GraphDatabaseService targetDb;
+    private final HighestInfo highestInfo;
+    // source to target IDs, null if unmapped
+    private final LongFunction<Long> nodes;
+    // null without a relationship mapping
+    private final LongFunction<Long> relationships;
+    private final Set<String> dropLabels;
+    private final Supplier<CopyTransform> transforms;
+    private final ExecutorService executor;
+    private final int threads;
+    private final long deadline;
+
+    public VerifyReport verify(int samples) {
+        final var report = new VerifyReport();
+        verifyCounts(report);
+        if (null == nodes) {
+            println("No mapping provided, skipping the sampled record checks.");
+            return report;
+        }
+        sample(report, samples, highestInfo.getNodeId(), this::verifyNode);
+        final Check check =
+                null == relationships ? this::verifyRelationshipByNodes : this::verifyRelationship;
+        sample(report, samples, highestInfo.getRelationshipId(), check);
+        return report;
+    }
+
+    void verifyCounts(VerifyReport report) {
+        final var source = CompletableFuture.supplyAsync(() -> counts(sourceDb), executor);
+        final var target = CompletableFuture.supplyAsync(() -> counts(targetDb), executor);
+        final var sourceCounts = source.join();
+        final var targetCounts = target.join();
+        compareCounts("Label", sourceCounts.get(0), targetCounts.get(0), dropLabels, report);
+        compareCounts("Type", sourceCounts.get(1), targetCounts.get(1), Set.of(), report);
+    }
+
+    /** Count the nodes per label and relationships per type, both are read from the count store. */
+    static List<Map<String, Long>> counts(GraphDatabaseService db) {
+        final Map<String, Long> labels = new TreeMap<>();
+        final Map<String, Long> types = new TreeMap<>();
+        try (Transaction tx = db.beginTx()) {
+            for (Label label : tx.getAllLabelsInUse()) {
+                final var query = "MATCH (n:`%s`) RETURN count(n) AS c";
+                labels.put(label.name(), count(tx, String.format(query, escape(label.name()))));
+            }
+            for (RelationshipType type : tx.getAllRelationshipTypesInUse()) {
+                final var query = "MATCH ()-[r:`%s`]->() RETURN count(r) AS c";
+                types.put(type.name(), count(tx, String.format(query, escape(type.name()))));
+            }
+        }
+        return List.of(labels, types);
+    }
+
+    static long count(Transaction tx, String query) {
+        try (final var result = tx.execute(query)) {
+            return ((Number) result.next().get("c")).longValue();
+        }
+    }
+
+    static String escape(String name) {
+        return name.replace("`", "``");
+    }
+
+    static void compareCounts(
+            String kind,
+            Map<String, Long> source,
+            Map<String, Long> target,
+            Set<String> dropped,
+            VerifyReport report) {
+        final var names = new TreeSet<>(source.keySet());
+        names.addAll(target.keySet());
+        for (String name : names) {
+            final long sourceCount = source.getOrDefault(name, 0L);
+            final long targetCount = target.getOrDefault(name, 0L);
+            if (dropped.contains(name) && targetCount > 0) {
+                final var fmt = "%s '%s' was dropped but %d remain in the target";
+                report.problem(report.countMismatches, fmt, kind, name, targetCount);
+            } else if (targetCount > sourceCount) {
+                final var fmt = "%s '%s' source: %d target: %d";
+                report.problem(report.countMismatches, fmt, kind, name, sourceCount, targetCount);
+            } else if (targetCount < sourceCount) {
+                final long filtered = sourceCount - targetCount;
+                println("%s '%s' filtered %d of %d", kind, name, filtered, sourceCount);
+            }
+        }
+    }
+
+    interface Check {
+        /** Check the source record against the target, false if the record is not mapped. */
+        boolean check(
+                Transaction source,
+                Transaction target,
+                CopyTransform transform,
+                long id,
+                VerifyReport report);
+    }
+
+    /** Split the samples over the threads, each with its own transactions. */
+    void sample(VerifyReport report, int samples, long highestId, Check check) {
+        final int quota = Math.max(1, samples / threads);
+        final List<CompletableFuture<Void>> workers = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            workers.add(
+                    CompletableFuture.runAsync(
+                            () -> sampleRange(report, quota, highestId, check), executor));
+        }
+        workers.forEach(CompletableFuture::join);
+    }
+
+    void sampleRange(VerifyReport report, int quota, long highestId, Check check) {
+        final var random = ThreadLocalRandom.current();
+        final var transform = transforms.get();
+        try (Transaction source = sourceDb.beginTx();
+                Transaction target = targetDb.beginTx()) {
+            int checked = 0;
+            for (int i = 0; i < quota * MAX_ATTEMPTS && checked < quota; i++) {
+                if (currentTimeMillis() > deadline) {
+                    report.timedOut = true;
+                    return;
+                }
+                final long id = random.nextLong(highestId + 1);
+                if (check.check(source, target, transform, id, report)) {
+                    checked++;
+                }
+            }
+        }
+    }
+
+    boolean verifyNode(
+            Transaction source,
+            Transaction target,
+            CopyTransform transform,
+            long id,
+            VerifyReport report) {
+        final Long targetId = nodes.apply(id);
+        if (null == targetId) {
+            return false;
+        }
+        report.nodesChecked.incrementAndGet();
+        final Node sourceNode;
+        final Node targetNode;
+        try {
+            sourceNode = source.getNodeById(id);
+        } catch (NotFoundException e) {
+            report.problem(report.nodeMismatches, "Node %d is mapped but not in the source", id);
+            return true;
+        }
+        try {
+            targetNode = target.getNodeById(targetId);
+        } catch (NotFoundException e) {
+            final var fmt = "Node %d is mapped to %d which is not in the target";
+            report.problem(report.nodeMismatches, fmt, id, targetId);
+            return true;
+        }
+        final var labels = Iterables.asList(sourceNode.getLabels());
+        final var labelNames = labels.stream().map(Label::name).collect(Collectors.toList());
+        final var properties = transform.nodeProperties(labelNames, sourceNode.getAllProperties());
+        final long expected =
+                RangeFingerprints.hashNode(id, Arrays.asList(transform.labels(labels)), properties);
+        final long actual =
+                RangeFingerprints.hashNode(
+                        id, targetNode.getLabels(), targetNode.getAllProperties());
+        if (expected != actual) {
+            final var fmt = "Node %d differs from target node %d";
+            report.problem(report.nodeMismatches, fmt, id, targetId);
+        }
+        return true;
+    }
+
+    boolean verifyRelationship(
+            Transaction source,
+            Transaction target,
+            CopyTransform transform,
+            long id,
+            VerifyReport report) {
+        final Long targetId = relationships.apply(id);
+        if (null == targetId) {
+            return false;
+        }
+        report.relationshipsChecked.incrementAndGet();
+        final Relationship sourceRel;
+        final Relationship targetRel;
+        try {
+            sourceRel = source.getRelationshipById(id);
+        } catch (NotFoundException e) {
+            final var fmt = "Relationship %d is mapped but not in the source";
+            report.problem(report.relationshipMismatches, fmt, id);
+            return true;
+        }
+        try {
+            targetRel = target.getRelationshipById(targetId);
+        } catch (NotFoundException e) {
+            final var fmt = "Relationship %d is mapped to %d which is not in the target";
+            report.problem(report.relationshipMismatches, fmt, id, targetId);
+            return true;
+        }
+
+        // the endpoints of the copy must be the copies of the source endpoints
+        final Long start = nodes.apply(sourceRel.getStartNodeId());
+        final Long end = nodes.apply(sourceRel.getEndNodeId());
+        if (null == start
+                || null == end
+                || start != targetRel.getStartNodeId()
+                || end != targetRel.getEndNodeId()) {
+            final var fmt = "Relationship %d endpoints (%s)->(%s) target (%d)->(%d)";
+            report.problem(
+                    report.endpointMismatches,
+                    fmt,
+                    id,
+                    start,
+                    end,
+                    targetRel.getStartNodeId(),
+                    targetRel.getEndNodeId());
+            return true;
+        }
+
+        final var type = sourceRel.getType().name();
+        final var properties = transform.relationshipProperties(type, sourceRel.getAllProperties());
+        final long expected = RangeFingerprints.hashRelationship(id, start, end, type, properties);
+        final long actual =
+                RangeFingerprints.hashRelationship(
+                        id,
+                        targetRel.getStartNodeId(),
+                        targetRel.getEndNodeId(),
+                        targetRel.getType().name(),
+                        targetRel.getAllProperties());
+        if (expected != actual) {
+            final var fmt = "Relationship %d differs from target relationship %d";
+            report.problem(report.relationshipMismatches, fmt, id, targetId);
+        }
+        return true;
+    }
+
+    /**
+     * Find the copy of the relationship between the copies of its nodes, by type and checksum. A
+     * relationship without a copy of its type between them was filtered, it's not a sample.
+     */
+    boolean verifyRelationshipByNodes(
+            Transaction source,
+            Transaction target,
+            CopyTransform transform,
+            long id,
+            VerifyReport report) {
+        final Relationship sourceRel;
+        try {
+            sourceRel = source.getRelationshipById(id);
+        } catch (NotFoundException e) {
+            return false;
+        }
+        final Long start = nodes.apply(sourceRel.getStartNodeId());
+        final Long end = nodes.apply(sourceRel.getEndNodeId());
+        if (null == start || null == end) {
+            return false;
+        }
+        final Node targetStart;
+        try {
+            targetStart = target.getNodeById(start);
+        } catch (NotFoundException e) {
+            // reported by the node samples
+            return false;
+        }
+        final var type = sourceRel.getType();
+        final var properties =
+                transform.relationshipProperties(type.name(), sourceRel.getAllProperties());
+        final long expected =
+                RangeFingerprints.hashRelationship(id, start, end, type.name(), properties);
+        boolean found = false;
+        for (Relationship rel : targetStart.getRelationships(Direction.OUTGOING, type)) {
+            if (rel.getEndNodeId() != end) {
+                continue;
+            }
+            found = true;
+            final long actual =
+                    RangeFingerprints.hashRelationship(
+                            id, start, end, type.name(), rel.getAllProperties());
+            if (expected == actual) {
+                report.relationshipsChecked.incrementAndGet();
+                return true;
+            }
+        }
+        if (!found) {
+            return false;
+        }
+        report.relationshipsChecked.incrementAndGet();
+        final var fmt = "Relationship %d has no matching copy between target (%d)->(%d)";
+        report.problem(report.relationshipMismatches, fmt, id, start, end);
+        return true;
+    }
+}
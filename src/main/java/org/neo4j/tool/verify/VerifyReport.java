@@ -0,0 +1,74 @@
+/*
+ * Copyright 2002 Brinqa, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neo4j.tool.verify;
+
+import static org.neo4j.tool.util.Print.println;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/** Totals of a verification, updated by the sampling threads. */
+public class VerifyReport {
+
+    // only the first problems are printed, the rest are counted
+    static final int MAX_PRINTED = 20;
+
+    final AtomicLong countMismatches = new AtomicLong();
+    final AtomicLong nodesChecked = new AtomicLong();
+    final AtomicLong nodeMismatches = new AtomicLong();
+    final AtomicLong relationshipsChecked = new AtomicLong();
+    final AtomicLong endpointMismatches = new AtomicLong();
+    final AtomicLong relationshipMismatches = new AtomicLong();
+    final AtomicLong printed = new AtomicLong();
+
+    volatile boolean timedOut = false;
+
+    void problem(AtomicLong counter, String fmt, Object... args) {
+        counter.incrementAndGet();
+        if (printed.incrementAndGet() <= MAX_PRINTED) {
+            println("MISMATCH " + fmt, args);
+        }
+    }
+
+    public boolean isValid() {
+        return 0 == countMismatches.get()
+                + nodeMismatches.get()
+                + endpointMismatches.get()
+                + relationshipMismatches.get();
+    }
+
+    public void print() {
+        final var fmt =
+                new String[] {
+                    "%nCount Mismatches: %d",
+                    "Nodes Checked: %d",
+                    "Node Mismatches: %d",
+                    "Relationships Checked: %d",
+                    "Endpoint Mismatches: %d",
+                    "Relationship Mismatches: %d"
+                };
+        println(
+                String.join("%n", fmt),
+                countMismatches.get(),
+                nodesChecked.get(),
+                nodeMismatches.get(),
+                relationshipsChecked.get(),
+                endpointMismatches.get(),
+                relationshipMismatches.get());
+        if (timedOut) {
+            println("Time budget was reached before all the samples were checked.");
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.brinqa.storage;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class MappingFileTest {
+
+    @Test
+    public void testSparse() throws IOException {
+        final var file = Files.createTempFile("mapping", ".bin").toFile();
+        try {
+            // spans several blocks
+            try (final var writer = MappingFile.writer(file)) {
+                for (long id = 0; id < 10_000; id++) {
+                    writer.add(id * 3, id + 100);
+                }
+            }
+            try (final var mapping = MappingFile.open(file)) {
+                mapping.verify();
+                Assert.assertEquals(10_000, mapping.size());
+                Assert.assertFalse(mapping.isDense());
+                Assert.assertEquals(29_997, mapping.lastKey());
+                Assert.assertEquals(100, mapping.get(0));
+                Assert.assertEquals(5_100, mapping.get(15_000));
+                Assert.assertEquals(MappingFile.MISSING, mapping.get(15_001));
+                Assert.assertEquals(MappingFile.MISSING, mapping.get(-3));
+                Assert.assertEquals(MappingFile.MISSING, mapping.get(30_000));
+
+                final long[] ids = {3, 6, 7, 29_997, 0, 9};
+                Assert.assertEquals(1, mapping.remap(ids, ids.length));
+                Assert.assertArrayEquals(new long[] {101, 102, -1, 10_099, 100, 103}, ids);
+            }
+        } finally {
+            Files.delete(file.toPath());
+        }
+    }
+
+    @Test
+    public void testDense() throws IOException {
+        final var file = Files.createTempFile("mapping", ".bin").toFile();
+        try {
+            try (final var writer = MappingFile.writer(file)) {
+                for (long id = 5; id < 100; id++) {
+                    writer.add(id, id * 2);
+                }
+            }
+            try (final var mapping = MappingFile.open(file)) {
+                Assert.assertTrue(mapping.isDense());
+                Assert.assertEquals(10, mapping.get(5));
+                Assert.assertEquals(198, mapping.get(99));
+                Assert.assertEquals(MappingFile.MISSING, mapping.get(4));
+            }
+        } finally {
+            Files.delete(file.toPath());
+        }
+    }
+
+    @Test
+    public void testEmpty() throws IOException {
+        final var file = Files.createTempFile("mapping", ".bin").toFile();
+        try {
+            MappingFile.writer(file).close();
+            try (final var mapping = MappingFile.open(file)) {
+                mapping.verify();
+                Assert.assertEquals(0, mapping.size());
+                Assert.assertEquals(MappingFile.MISSING, mapping.get(0));
+            }
+        } finally {
+            Files.delete(file.toPath());
+        }
+    }
+
+    @Test
+    public void testCorruptEntry() throws IOException {
+        final var file = Files.createTempFile("mapping", ".bin").toFile();
+        try {
+            try (final var writer = MappingFile.writer(file)) {
+                for (long id = 0; id < 5_000; id++) {
+                    writer.add(id, id);
+                }
+            }
+            flip(file, MappingFile.HEADER_BYTES + 4_500L * MappingFile.ENTRY_BYTES);
+            try (final var mapping = MappingFile.open(file)) {
+                mapping.verify();
+                Assert.fail("Expected the second block to fail");
+            } catch (IllegalStateException e) {
+                Assert.assertTrue(e.getMessage().endsWith("block 1"));
+            }
+        } finally {
+            Files.delete(file.toPath());
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testCorruptHeader() throws IOException {
+        final var file = Files.createTempFile("mapping", ".bin").toFile();
+        try {
+            try (final var writer = MappingFile.writer(file)) {
+                writer.add(1, 1);
+            }
+            flip(file, 24);
+            MappingFile.open(file);
+        } finally {
+            Files.delete(file.toPath());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnsorted() throws IOException {
+        final var file = Files.createTempFile("mapping", ".bin").toFile();
+        try (final var writer = MappingFile.writer(file)) {
+            writer.add(2, 1);
+            writer.add(1, 1);
+        } finally {
+            Files.delete(file.toPath());
+        }
+    }
+
+    static void flip(File file, long position) throws IOException {
+        try (final var raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(position);
+            final int b = raf.read();
+            raf.seek(position);
+            raf.write(b ^ 0xFF);
+        }
+    }
+}
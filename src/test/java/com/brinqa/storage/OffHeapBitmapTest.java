@@ -0,0 +1,51 @@
+package com.brinqa.storage;
+
+import java.util.BitSet;
+import java.util.Random;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class OffHeapBitmapTest {
+
+    @Test
+    public void testMatchesBitSet() {
+        final var random = new Random(7);
+        final var expected = new BitSet();
+        try (final var bitmap = new OffHeapBitmap(100_000)) {
+            for (int i = 0; i < 5_000; i++) {
+                final int id = random.nextInt(100_000);
+                Assert.assertEquals(!expected.get(id), bitmap.set(id));
+                expected.set(id);
+            }
+            Assert.assertEquals(expected.cardinality(), bitmap.cardinality());
+            long id = bitmap.nextSetBit(0);
+            for (int e = expected.nextSetBit(0); e >= 0; e = expected.nextSetBit(e + 1)) {
+                Assert.assertEquals(e, id);
+                Assert.assertTrue(bitmap.get(id));
+                id = bitmap.nextSetBit(id + 1);
+            }
+            Assert.assertEquals(-1, id);
+        }
+    }
+
+    @Test
+    public void testSparseSegments() {
+        final long capacity = 3L << OffHeapBitmap.SEGMENT_SHIFT;
+        try (final var bitmap = new OffHeapBitmap(capacity)) {
+            Assert.assertEquals(-1, bitmap.nextSetBit(0));
+            Assert.assertFalse(bitmap.get(capacity - 1));
+            bitmap.set(capacity - 1);
+            // only the last segment is allocated
+            Assert.assertEquals(capacity / 3 / 8, bitmap.allocated());
+            Assert.assertEquals(capacity - 1, bitmap.nextSetBit(0));
+            Assert.assertEquals(-1, bitmap.nextSetBit(capacity));
+        }
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testOutside() {
+        try (final var bitmap = new OffHeapBitmap(10)) {
+            bitmap.set(10);
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.brinqa.storage;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class OffHeapBytesTest {
+
+    @Test
+    public void testSparseSegments() {
+        final long capacity = 3L << OffHeapBytes.SEGMENT_SHIFT;
+        try (final var bytes = new OffHeapBytes(capacity)) {
+            Assert.assertEquals(0, bytes.get(capacity - 1));
+            bytes.set(capacity - 1, (byte) 255);
+            bytes.set(capacity - 2, (byte) 3);
+            // only the last segment is allocated
+            Assert.assertEquals(capacity / 3, bytes.allocated());
+            Assert.assertEquals(255, Byte.toUnsignedInt(bytes.get(capacity - 1)));
+            Assert.assertEquals(3, bytes.get(capacity - 2));
+            Assert.assertEquals(0, bytes.get(0));
+            Assert.assertEquals(0, bytes.get(capacity));
+        }
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testOutOfBounds() {
+        try (final var bytes = new OffHeapBytes(10)) {
+            bytes.set(10, (byte) 1);
+        }
+    }
+}
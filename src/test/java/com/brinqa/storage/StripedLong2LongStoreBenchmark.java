@@ -0,0 +1,91 @@
+package com.brinqa.storage;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Puts per second of the striped store as the writer threads grow, each writer copies its own
+ * ranges of IDs like a copy worker would. One stripe stands in for a single store.
+ *
+ * <pre>
+ *   mvn test-compile exec:java -Dexec.classpathScope=test \
+ *       -Dexec.mainClass=com.brinqa.storage.StripedLong2LongStoreBenchmark
+ * </pre>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Fork(1)
+public class StripedLong2LongStoreBenchmark {
+
+    static final int[] THREADS = {1, 2, 4, 8};
+
+    @State(Scope.Benchmark)
+    public static class Store {
+
+        @Param({"1", "8"})
+        int stripes;
+
+        StripedLong2LongStore store;
+        final AtomicLong nextRange = new AtomicLong();
+
+        @Setup(Level.Trial)
+        public void open() {
+            store = new StripedLong2LongStore(stripes);
+        }
+
+        @TearDown(Level.Trial)
+        public void delete() {
+            store.delete();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Writer {
+        long next;
+        long end;
+
+        void nextRange(Store store) {
+            final long range = store.nextRange.getAndIncrement();
+            next = range << StripedLong2LongStore.RANGE_SHIFT;
+            end = next + (1L << StripedLong2LongStore.RANGE_SHIFT);
+        }
+    }
+
+    @Benchmark
+    public void put(Store store, Writer writer) {
+        if (writer.next == writer.end) {
+            writer.nextRange(store);
+        }
+        final long key = writer.next++;
+        store.store.put(key, key);
+    }
+
+    public static void main(String... args) throws RunnerException {
+        for (int threads : THREADS) {
+            final var options =
+                    new OptionsBuilder()
+                            .include(StripedLong2LongStoreBenchmark.class.getSimpleName())
+                            .threads(threads)
+                            .build();
+            new Runner(options).run();
+        }
+    }
+}
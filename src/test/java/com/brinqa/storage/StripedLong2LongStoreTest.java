@@ -0,0 +1,91 @@
+package com.brinqa.storage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class StripedLong2LongStoreTest {
+
+    static final int THREADS = 8;
+
+    @Test
+    public void testConcurrentDuplicates() throws InterruptedException, ExecutionException {
+        final var executor = Executors.newFixedThreadPool(THREADS);
+        final var store = new StripedLong2LongStore(4);
+        try {
+            // every thread writes the same keys, across several ranges
+            final List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                futures.add(
+                        executor.submit(
+                                () -> {
+                                    for (long key = 0; key < 200_000; key += 97) {
+                                        store.put(key, key + 1);
+                                    }
+                                }));
+            }
+            for (Future<?> f : futures) {
+                f.get();
+            }
+            Assert.assertEquals((200_000 + 96) / 97, store.size());
+            Assert.assertEquals(Long.valueOf(98), store.get(97L));
+            Assert.assertNull(store.get(98L));
+
+            store.remove(97L);
+            store.remove(98L);
+            Assert.assertEquals((200_000 + 96) / 97 - 1, store.size());
+        } finally {
+            store.delete();
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testPutIfAbsent() throws InterruptedException, ExecutionException {
+        final var executor = Executors.newFixedThreadPool(THREADS);
+        final var winners = new AtomicInteger();
+        final var store = new StripedLong2LongStore(2);
+        try {
+            final List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                final long value = t;
+                futures.add(
+                        executor.submit(
+                                () -> {
+                                    if (null == store.putIfAbsent(7L, value)) {
+                                        winners.incrementAndGet();
+                                    }
+                                }));
+            }
+            for (Future<?> f : futures) {
+                f.get();
+            }
+            Assert.assertEquals(1, winners.get());
+            Assert.assertEquals(1, store.size());
+        } finally {
+            store.delete();
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testRangesSpreadOverStripes() {
+        final var store = new StripedLong2LongStore(3);
+        try {
+            final long range = 1L << StripedLong2LongStore.RANGE_SHIFT;
+            Assert.assertEquals(0, store.stripeOf(0));
+            Assert.assertEquals(0, store.stripeOf(range - 1));
+            Assert.assertEquals(1, store.stripeOf(range));
+            Assert.assertEquals(2, store.stripeOf(2 * range));
+            Assert.assertEquals(0, store.stripeOf(3 * range));
+            Assert.assertTrue(store.stripeOf(-1) >= 0);
+        } finally {
+            store.delete();
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.brinqa.storage;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TieredLong2LongStoreTest {
+
+    @Test
+    public void testInMemory() {
+        try (final var store = new TieredLong2LongStore(1024 * 1024)) {
+            for (long i = 0; i < 10_000; i++) {
+                store.put(i, i * 2);
+            }
+            store.put(Long.MIN_VALUE, 7L);
+            Assert.assertEquals(10_001, store.size());
+            Assert.assertEquals(Long.valueOf(2_000), store.get(1_000L));
+            Assert.assertEquals(Long.valueOf(7), store.get(Long.MIN_VALUE));
+            Assert.assertNull(store.get(-1L));
+            Assert.assertEquals(0, store.spills());
+        }
+    }
+
+    @Test
+    public void testSpillMatchesMap() {
+        final Map<Long, Long> expected = new HashMap<>();
+        final var random = new Random(42);
+        // 64 slots, spills every 32 entries
+        try (final var store = new TieredLong2LongStore(64 * TieredLong2LongStore.SLOT_BYTES)) {
+            for (int i = 0; i < 5_000; i++) {
+                final long key = random.nextInt(2_000) - 100;
+                if (random.nextInt(5) == 0) {
+                    store.remove(key);
+                    expected.remove(key);
+                } else {
+                    final long value = random.nextLong();
+                    store.put(key, value);
+                    expected.put(key, value);
+                }
+            }
+            Assert.assertTrue(store.spills() > 0);
+            Assert.assertEquals(expected.size(), store.size());
+            for (long key = -100; key < 1_900; key++) {
+                Assert.assertEquals(expected.get(key), store.get(key));
+            }
+        }
+    }
+
+    @Test
+    public void testAscendingKeys() {
+        try (final var store = new TieredLong2LongStore(64 * TieredLong2LongStore.SLOT_BYTES)) {
+            for (long i = 0; i < 1_000; i++) {
+                store.put(i, i + 1);
+            }
+            Assert.assertTrue(store.spills() > 0);
+            // a spilled key put again is counted once
+            store.put(10L, 5L);
+            store.put(-1L, 0L);
+            Assert.assertEquals(1_001, store.size());
+            Assert.assertEquals(Long.valueOf(5), store.get(10L));
+            Assert.assertEquals(Long.valueOf(1_000), store.get(999L));
+            Assert.assertNull(store.get(1_000L));
+        }
+    }
+}
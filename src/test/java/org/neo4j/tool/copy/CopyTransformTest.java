@@ -0,0 +1,67 @@
+/*
+ * Copyright 2002 Brinqa, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neo4j.tool.copy;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.junit.Assert;
+import org.junit.Test;
+import org.neo4j.graphdb.Label;
+
+public class CopyTransformTest {
+
+    @Test
+    public void testNone() {
+        final var transform = CopyTransform.none();
+        final Map<String, Object> props = Map.of("a", 1);
+        Assert.assertTrue(transform.isEmpty());
+        Assert.assertSame(props, transform.nodeProperties(List.of("x"), props));
+        Assert.assertSame(props, transform.relationshipProperties("T", props));
+    }
+
+    @Test
+    public void testDropLabels() {
+        final var transform = new CopyTransform(Set.of("x"), List.of(), List.of());
+        final var labels = transform.labels(List.of(Label.label("x"), Label.label("y")));
+        Assert.assertEquals(1, labels.length);
+        Assert.assertEquals("y", labels[0].name());
+    }
+
+    @Test
+    public void testGlobalProperties() {
+        final var transform = new CopyTransform(Set.of(), List.of("import_*", "b"), List.of());
+        final Map<String, Object> props = Map.of("import_ts", 1, "import_by", 2, "a", 3, "b", 4);
+        Assert.assertEquals(Map.of("a", 3), transform.nodeProperties(List.of("x"), props));
+    }
+
+    @Test
+    public void testScopedProperties() {
+        final var transform = new CopyTransform(Set.of(), List.of("x:a?"), List.of("T:*"));
+        final Map<String, Object> props = Map.of("a1", 1, "a", 2);
+        Assert.assertEquals(Map.of("a", 2), transform.nodeProperties(List.of("y", "x"), props));
+        Assert.assertEquals(props, transform.nodeProperties(List.of("y"), props));
+        Assert.assertEquals(Map.of(), transform.relationshipProperties("T", props));
+        Assert.assertEquals(props, transform.relationshipProperties("U", props));
+    }
+
+    @Test
+    public void testPatternQuoting() {
+        final var transform = new CopyTransform(Set.of(), List.of("a.b"), List.of());
+        final Map<String, Object> props = Map.of("a.b", 1, "axb", 2);
+        Assert.assertEquals(Map.of("axb", 2), transform.nodeProperties(List.of(), props));
+    }
+}
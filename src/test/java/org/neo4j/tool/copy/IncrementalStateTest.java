@@ -0,0 +1,128 @@
+/*
+ * Copyright 2002 Brinqa, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neo4j.tool.copy;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class IncrementalStateTest {
+
+    @Test
+    public void testCompletedCopy() throws IOException {
+        final File dir = Files.createTempDirectory("state").toFile();
+        try {
+            try (final var state = new IncrementalState(dir, "options")) {
+                Assert.assertFalse(state.isIncremental());
+                state.getNodes().put(1L, 10L);
+                state.getNodes().put(2L, 20L);
+                state.getRelationships().put(1L, 10L);
+                complete(state);
+            }
+            Assert.assertTrue(IncrementalState.exists(dir));
+            Assert.assertFalse(IncrementalState.interrupted(dir));
+            try (final var state = new IncrementalState(dir, "options")) {
+                Assert.assertTrue(state.isIncremental());
+                // the sizes come from the state file
+                Assert.assertEquals(2, state.getNodes().size());
+                Assert.assertEquals(1, state.getRelationships().size());
+                Assert.assertEquals(Long.valueOf(20L), state.getNodes().get(2L));
+                complete(state);
+            }
+        } finally {
+            deleteTree(dir);
+        }
+    }
+
+    @Test
+    public void testFailedStartup() throws IOException {
+        final File dir = Files.createTempDirectory("state").toFile();
+        try {
+            try (final var state = new IncrementalState(dir, "options")) {
+                complete(state);
+            }
+            // opened, but the copy never started writing
+            new IncrementalState(dir, "options").close();
+            Assert.assertTrue(IncrementalState.exists(dir));
+            Assert.assertFalse(IncrementalState.interrupted(dir));
+            try (final var state = new IncrementalState(dir, "options")) {
+                Assert.assertTrue(state.isIncremental());
+            }
+        } finally {
+            deleteTree(dir);
+        }
+    }
+
+    @Test
+    public void testInterruptedCopy() throws IOException {
+        final File dir = Files.createTempDirectory("state").toFile();
+        try {
+            // a full copy that never completes
+            start(dir);
+            Assert.assertFalse(IncrementalState.exists(dir));
+            Assert.assertTrue(IncrementalState.interrupted(dir));
+            try {
+                new IncrementalState(dir, "options").close();
+                Assert.fail("Rerun into the target of an interrupted copy");
+            } catch (IllegalStateException e) {
+                Assert.assertTrue(e.getMessage().contains("interrupted"));
+            }
+
+            // an incremental copy that never completes
+            deleteTree(dir);
+            try (final var state = new IncrementalState(dir, "options")) {
+                complete(state);
+            }
+            start(dir);
+            // the last fingerprints are kept, the marker refuses the rerun
+            Assert.assertTrue(IncrementalState.exists(dir));
+            Assert.assertTrue(IncrementalState.interrupted(dir));
+            try {
+                new IncrementalState(dir, "options").close();
+                Assert.fail("Rerun into the target of an interrupted copy");
+            } catch (IllegalStateException e) {
+                Assert.assertTrue(e.getMessage().contains("interrupted"));
+            }
+        } finally {
+            deleteTree(dir);
+        }
+    }
+
+    static void start(File dir) {
+        try (final var state = new IncrementalState(dir, "options")) {
+            state.start();
+        }
+    }
+
+    static void complete(IncrementalState state) {
+        state.start();
+        state.setNodeFingerprints(new RangeFingerprints(10));
+        state.setRelationshipFingerprints(new RangeFingerprints(10));
+        state.save();
+    }
+
+    static void deleteTree(File dir) {
+        final var files = dir.listFiles();
+        if (null != files) {
+            for (File f : files) {
+                deleteTree(f);
+            }
+        }
+        dir.delete();
+    }
+}
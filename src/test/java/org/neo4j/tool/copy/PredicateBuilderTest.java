@@ -17,6 +17,8 @@ package org.neo4j.tool.copy;
 
 import java.util.List;
 import java.util.Map;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -93,4 +95,41 @@ public class PredicateBuilderTest {
             throw new RuntimeException(e);
         }
     }
+
+    @Test
+    public void testRelationshipScript() {
+        try (PredicateBuilder builder = new PredicateBuilder()) {
+            Predicate<RelationshipObject> p =
+                    builder.newRelationshipInstance(
+                            "rel.type == 'KNOWS' && rel.startLabels.contains('x')");
+            Assert.assertTrue(p.test(rel("KNOWS", List.of("x"), Map.of())));
+            Assert.assertFalse(p.test(rel("KNOWS", List.of("y"), Map.of())));
+            Assert.assertFalse(p.test(rel("LIKES", List.of("x"), Map.of())));
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Test
+    public void testRelationshipPropertiesSkipLabels() {
+        try (PredicateBuilder builder = new PredicateBuilder()) {
+            Predicate<RelationshipObject> p =
+                    builder.newRelationshipInstance(
+                            "rel.containsProperty('weight') ? rel.weight > 1 : true");
+            final Supplier<List<String>> unused =
+                    () -> {
+                        throw new AssertionError("labels should not be read");
+                    };
+            Assert.assertFalse(
+                    p.test(new RelationshipObject("KNOWS", Map.of("weight", 1), unused, unused)));
+            Assert.assertTrue(
+                    p.test(new RelationshipObject("KNOWS", Map.of("weight", 2), unused, unused)));
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    static RelationshipObject rel(String type, List<String> start, Map<String, Object> props) {
+        return new RelationshipObject(type, props, () -> start, List::of);
+    }
 }
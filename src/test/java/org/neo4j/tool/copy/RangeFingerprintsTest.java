@@ -0,0 +1,45 @@
+/*
+ * Copyright 2002 Brinqa, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neo4j.tool.copy;
+
+import java.util.Map;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RangeFingerprintsTest {
+
+    static long hash(Object value) {
+        return RangeFingerprints.hashProperties(Map.of("p", value));
+    }
+
+    @Test
+    public void testNumericTypes() {
+        Assert.assertEquals(hash(1L), hash(1L));
+        Assert.assertNotEquals(hash(1L), hash(1.0d));
+        Assert.assertNotEquals(hash(1L), hash(1));
+        Assert.assertNotEquals(hash(1.0f), hash(1.0d));
+        // differ only above the low 32 bits
+        Assert.assertNotEquals(hash(1L), hash(1L + (1L << 32)));
+    }
+
+    @Test
+    public void testArrays() {
+        Assert.assertEquals(hash(new long[] {1, 2}), hash(new long[] {1, 2}));
+        Assert.assertNotEquals(hash(new long[] {1, 2}), hash(new long[] {2, 1}));
+        Assert.assertNotEquals(hash(new long[] {1, 2}), hash(new int[] {1, 2}));
+        Assert.assertNotEquals(hash(new String[] {"a", "b"}), hash(new String[] {"ab"}));
+    }
+}
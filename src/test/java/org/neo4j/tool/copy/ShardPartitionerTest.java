@@ -0,0 +1,59 @@
+/*
+ * Copyright 2002 Brinqa, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neo4j.tool.copy;
+
+import java.util.List;
+import java.util.Map;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ShardPartitionerTest {
+
+    @Test
+    public void testByLabel() {
+        final var partitioner = ShardPartitioner.byLabel(List.of("TenantA", "TenantB"));
+        Assert.assertEquals(2, partitioner.shards());
+        Assert.assertEquals(0, partitioner.shardOf(List.of("Asset", "TenantA"), Map.of()));
+        Assert.assertEquals(1, partitioner.shardOf(List.of("TenantB"), Map.of()));
+        // the first shard label wins
+        Assert.assertEquals(0, partitioner.shardOf(List.of("TenantB", "TenantA"), Map.of()));
+        Assert.assertEquals(ShardPartitioner.NONE, partitioner.shardOf(List.of("x"), Map.of()));
+    }
+
+    @Test
+    public void testByProperty() {
+        final var partitioner = ShardPartitioner.byProperty("tenant", 4);
+        final int shard = partitioner.shardOf(List.of(), Map.of("tenant", "acme"));
+        Assert.assertTrue(shard >= 0 && shard < 4);
+        Assert.assertEquals(shard, partitioner.shardOf(List.of("x"), Map.of("tenant", "acme")));
+        Assert.assertEquals(ShardPartitioner.NONE, partitioner.shardOf(List.of(), Map.of()));
+    }
+
+    @Test
+    public void testByScript() {
+        try (PredicateBuilder builder = new PredicateBuilder()) {
+            final var script =
+                    builder.newShardInstance(
+                            "node.containsProperty('tenant') ? node.tenant % 3 : null");
+            final var partitioner = ShardPartitioner.byScript(script, 2);
+            Assert.assertEquals(1, partitioner.shardOf(List.of(), Map.of("tenant", 4)));
+            // outside the shards
+            Assert.assertEquals(
+                    ShardPartitioner.NONE, partitioner.shardOf(List.of(), Map.of("tenant", 5)));
+            Assert.assertEquals(ShardPartitioner.NONE, partitioner.shardOf(List.of(), Map.of()));
+        }
+    }
+}
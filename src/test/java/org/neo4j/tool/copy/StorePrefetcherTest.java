@@ -0,0 +1,46 @@
+/*
+ * Copyright 2002 Brinqa, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neo4j.tool.copy;
+
+import java.nio.ByteBuffer;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class StorePrefetcherTest {
+
+    @Test
+    public void testPropertyOf() {
+        final var records = ByteBuffer.allocate(3 * StorePrefetcher.STANDARD_NODE_SIZE);
+        final int offset = StorePrefetcher.NODE_PROPERTY_OFFSET;
+        // in use, high bits 0x3
+        records.put(0, (byte) 0x31).putInt(offset, 7);
+        // not in use
+        records.put(15, (byte) 0x30).putInt(15 + offset, 7);
+        // in use, no properties
+        records.put(30, (byte) 0xF1).putInt(30 + offset, -1);
+
+        Assert.assertEquals((3L << 32) | 7, StorePrefetcher.propertyOf(records, 0, offset));
+        Assert.assertEquals(-1L, StorePrefetcher.propertyOf(records, 15, offset));
+        Assert.assertEquals(-1L, StorePrefetcher.propertyOf(records, 30, offset));
+    }
+
+    @Test
+    public void testPageOf() {
+        // records don't cross pages, 546 node records fit a page
+        Assert.assertEquals(0, StorePrefetcher.pageOf(545, StorePrefetcher.STANDARD_NODE_SIZE));
+        Assert.assertEquals(1, StorePrefetcher.pageOf(546, StorePrefetcher.STANDARD_NODE_SIZE));
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2002 Brinqa, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neo4j.tool.index;
+
+import java.util.List;
+import org.apache.commons.lang3.tuple.Pair;
+import org.junit.Assert;
+import org.junit.Test;
+import org.neo4j.tool.dto.Bucket;
+import org.neo4j.tool.dto.IndexData;
+
+public class BucketBuilderTest {
+
+    static Pair<IndexData, Long> index(String name, long size, String... properties) {
+        final var index =
+                IndexData.builder()
+                        .name(name)
+                        .labelsOrTypes(List.of("L"))
+                        .properties(List.of(properties))
+                        .indexProvider(ProviderAdvisor.BTREE)
+                        .build();
+        return Pair.of(index, size);
+    }
+
+    @Test
+    public void testCost() {
+        final var model = IndexCostModel.DEFAULT;
+        Assert.assertEquals(1_000, model.cost(index("a", 10, "x").getKey(), 10));
+        Assert.assertEquals(2_000_000, model.cost(index("a", 0, "x", "y").getKey(), 1_000_000));
+        final var lucene =
+                index("a", 0, "x").getKey().toBuilder().indexProvider("lucene+native-3.0").build();
+        Assert.assertEquals(2_000_000, model.cost(lucene, 1_000_000));
+        final var unique = index("a", 0, "x").getKey().toBuilder().uniqueness(true).build();
+        Assert.assertEquals(1_500_000, model.cost(unique, 1_000_000));
+    }
+
+    @Test
+    public void testPacking() {
+        final var pairs =
+                List.of(
+                        index("a", 60, "x"),
+                        index("b", 50, "x"),
+                        index("c", 40, "x"),
+                        index("d", 30, "x"),
+                        index("e", 20, "x"),
+                        index("huge", 500, "x"));
+        final var model = IndexCostModel.builder().minimumCost(1).build();
+        final var buckets = BucketBuilder.build(pairs, model, 100);
+        // huge on its own, then a+c, b+d+e
+        Assert.assertEquals(3, buckets.size());
+        Assert.assertEquals(500, buckets.get(0).getCost());
+        for (Bucket bucket : buckets.subList(1, buckets.size())) {
+            Assert.assertEquals(100, bucket.getCost());
+        }
+        final long total =
+                buckets.stream().mapToLong(b -> b.getBatches().get(0).getIndexes().size()).sum();
+        Assert.assertEquals(6, total);
+    }
+}
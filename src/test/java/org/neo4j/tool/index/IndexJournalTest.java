@@ -0,0 +1,58 @@
+/*
+ * Copyright 2002 Brinqa, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neo4j.tool.index;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Test;
+import org.neo4j.tool.dto.IndexData;
+
+public class IndexJournalTest {
+
+    static IndexData index(String name) {
+        return IndexData.builder().name(name).labelsOrTypes(List.of("L")).build();
+    }
+
+    @Test
+    public void testResume() throws IOException {
+        final File file = File.createTempFile("rebuild", ".journal");
+        try {
+            try (IndexJournal journal = new IndexJournal(file)) {
+                journal.started(index("a"));
+                journal.done(index("a"));
+                journal.started(index("b"));
+            }
+            // a crash can leave a torn line
+            Files.writeString(file.toPath(), "{\"event\":\"DO", StandardOpenOption.APPEND);
+
+            try (IndexJournal journal = new IndexJournal(file)) {
+                Assert.assertTrue(journal.isDone("a"));
+                Assert.assertFalse(journal.isDone("b"));
+                Assert.assertEquals(1, journal.doneCount());
+                Assert.assertEquals(1, journal.inProgress().size());
+                final var inProgress = journal.inProgress().iterator().next();
+                Assert.assertEquals("b", inProgress.getName());
+                Assert.assertEquals(List.of("L"), inProgress.getLabelsOrTypes());
+            }
+        } finally {
+            Files.deleteIfExists(file.toPath());
+        }
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2002 Brinqa, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neo4j.tool.index;
+
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Test;
+import org.neo4j.tool.VersionQuery.Neo4jVersion;
+import org.neo4j.tool.dto.IndexData;
+
+public class IndexManagerTest {
+
+    final IndexManager manager = new IndexManager(null);
+
+    static IndexData.IndexDataBuilder index(String entityType, String... tokens) {
+        return IndexData.builder()
+                .name("idx")
+                .type("BTREE")
+                .entityType(entityType)
+                .labelsOrTypes(List.of(tokens))
+                .properties(List.of("a", "b"))
+                .indexProvider(ProviderAdvisor.BTREE);
+    }
+
+    @Test
+    public void testCompositeNodeIndex() {
+        final var index = index("NODE", "L").build();
+        Assert.assertEquals(
+                "CREATE INDEX `idx` IF NOT EXISTS FOR (n:`L`) ON (n.`a`,n.`b`)"
+                        + " OPTIONS { indexProvider: 'native-btree-1.0' };",
+                manager.indexOrConstraintQuery(Neo4jVersion.v4_4, index));
+    }
+
+    @Test
+    public void testRelationshipIndex() {
+        final var index = index("RELATIONSHIP", "T").build();
+        Assert.assertEquals(
+                "CREATE INDEX `idx` IF NOT EXISTS FOR ()-[r:`T`]-() ON (r.`a`,r.`b`)"
+                        + " OPTIONS { indexProvider: 'native-btree-1.0' };",
+                manager.indexOrConstraintQuery(Neo4jVersion.v4_4, index));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRelationshipIndexOn42() {
+        manager.indexOrConstraintQuery(Neo4jVersion.v4_2, index("RELATIONSHIP", "T").build());
+    }
+
+    @Test
+    public void testFulltextIndex() {
+        final var index = index("NODE", "A", "B").type("FULLTEXT").build();
+        Assert.assertEquals(
+                "CREATE FULLTEXT INDEX `idx` IF NOT EXISTS FOR (n:`A`|`B`) ON EACH [n.`a`,n.`b`];",
+                manager.indexOrConstraintQuery(Neo4jVersion.v4_4, index));
+        Assert.assertEquals(
+                "CALL db.index.fulltext.createNodeIndex('idx', ['A','B'], ['a','b']);",
+                manager.indexOrConstraintQuery(Neo4jVersion.v4_2, index));
+    }
+
+    @Test
+    public void testNodeKey() {
+        final var index = index("NODE", "L").uniqueness(true).build();
+        Assert.assertEquals(
+                "CREATE CONSTRAINT `idx` IF NOT EXISTS FOR (n:`L`) REQUIRE (n.`a`, n.`b`) IS NODE KEY;",
+                manager.indexOrConstraintQuery(Neo4jVersion.v4_4, index));
+    }
+}
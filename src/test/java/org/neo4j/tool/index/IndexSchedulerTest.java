@@ -0,0 +1,134 @@
+/*
+ * Copyright 2002 Brinqa, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neo4j.tool.index;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import org.apache.commons.lang3.tuple.Pair;
+import org.junit.Assert;
+import org.junit.Test;
+import org.neo4j.tool.dto.IndexData;
+
+public class IndexSchedulerTest {
+
+    static Pair<IndexData, Long> index(String name, long size) {
+        return Pair.of(IndexData.builder().name(name).build(), size);
+    }
+
+    @Test
+    public void testWeightBudget() {
+        final var sizes =
+                List.of(
+                        index("a", 80),
+                        index("b", 50),
+                        index("c", 30),
+                        index("d", 20),
+                        index("e", 10),
+                        index("huge", 500));
+        final Map<String, Long> weights =
+                sizes.stream().collect(Collectors.toMap(p -> p.getKey().getName(), Pair::getValue));
+        final var current = new AtomicLong();
+        final var count = new AtomicInteger();
+        final var maxWeight = new AtomicLong();
+        final var maxCount = new AtomicInteger();
+        final Set<String> built = ConcurrentHashMap.newKeySet();
+        final var scheduler =
+                new IndexScheduler(
+                        index -> {
+                            final long weight = weights.get(index.getName());
+                            final long w = current.addAndGet(weight);
+                            final int c = count.incrementAndGet();
+                            if (weight <= 100) {
+                                maxWeight.accumulateAndGet(w, Math::max);
+                            }
+                            maxCount.accumulateAndGet(c, Math::max);
+                            sleep(20);
+                            count.decrementAndGet();
+                            current.addAndGet(-weight);
+                            built.add(index.getName());
+                        },
+                        3,
+                        100);
+        Assert.assertEquals(0, scheduler.run(sizes));
+        Assert.assertEquals(6, built.size());
+        Assert.assertTrue(maxWeight.get() <= 100);
+        Assert.assertTrue(maxCount.get() <= 3);
+    }
+
+    @Test
+    public void testFailure() {
+        final var scheduler =
+                new IndexScheduler(
+                        index -> {
+                            if ("bad".equals(index.getName())) {
+                                throw new IllegalStateException("failed");
+                            }
+                            if ("error".equals(index.getName())) {
+                                throw new AssertionError("failed");
+                            }
+                        },
+                        2,
+                        100);
+        Assert.assertEquals(
+                2, scheduler.run(List.of(index("good", 1), index("bad", 1), index("error", 1))));
+    }
+
+    @Test
+    public void testRetryAfterRestart() {
+        final var restarts = new AtomicLong();
+        final var attempts = new AtomicInteger();
+        final var throttle =
+                new IndexScheduler.Throttle() {
+                    @Override
+                    public boolean admit() {
+                        return true;
+                    }
+
+                    @Override
+                    public long restarts() {
+                        return restarts.get();
+                    }
+                };
+        final var scheduler =
+                new IndexScheduler(
+                        index -> {
+                            // the server goes down during the first attempt
+                            if (attempts.incrementAndGet() == 1) {
+                                restarts.incrementAndGet();
+                                throw new IllegalStateException("connection lost");
+                            }
+                        },
+                        2,
+                        100,
+                        throttle);
+        Assert.assertEquals(0, scheduler.run(List.of(index("a", 1))));
+        Assert.assertEquals(2, attempts.get());
+    }
+
+    static void sleep(long ms) {
+        try {
+            TimeUnit.MILLISECONDS.sleep(ms);
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2002 Brinqa, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neo4j.tool.index;
+
+import java.util.List;
+import java.util.Map;
+import org.junit.Assert;
+import org.junit.Test;
+import org.neo4j.tool.dto.IndexData;
+import org.neo4j.tool.dto.PopulationStats;
+
+public class PopulationTrackerTest {
+
+    static IndexData index(String name, String provider) {
+        return IndexData.builder()
+                .name(name)
+                .labelsOrTypes(List.of("L"))
+                .properties(List.of("x"))
+                .indexProvider(provider)
+                .build();
+    }
+
+    @Test
+    public void testRateAndRemaining() {
+        final var tracker = new PopulationTracker();
+        final var a = index("a", ProviderAdvisor.BTREE);
+        tracker.expect(a, 1_000_000);
+        tracker.expect(index("b", ProviderAdvisor.BTREE), 500_000);
+        tracker.started(a, 0);
+        tracker.progress("a", 10f, 1_000);
+        tracker.progress("a", 30f, 2_000);
+        // 300k entries in 2 seconds
+        Assert.assertEquals(150_000d, tracker.rate(), 0.1);
+        Assert.assertEquals(700_000 + 500_000, tracker.remaining());
+
+        tracker.finished("a", true, 5_000);
+        final var stats = tracker.getCompleted();
+        Assert.assertEquals(1, stats.size());
+        Assert.assertEquals(5_000, stats.get(0).getDurationMillis());
+        Assert.assertEquals(200_000d, stats.get(0).entriesPerSecond(), 0.1);
+    }
+
+    @Test
+    public void testEstimate() {
+        final var history =
+                List.of(
+                        PopulationStats.builder()
+                                .name("a")
+                                .indexProvider(ProviderAdvisor.BTREE)
+                                .entities(1_000_000)
+                                .properties(1)
+                                .durationMillis(10_000)
+                                .online(true)
+                                .build(),
+                        PopulationStats.builder()
+                                .name("b")
+                                .indexProvider(ProviderAdvisor.LUCENE)
+                                .entities(1_000_000)
+                                .properties(1)
+                                .durationMillis(40_000)
+                                .online(true)
+                                .build());
+        final var sizes =
+                Map.of(
+                        index("c", ProviderAdvisor.BTREE), 2_000_000L,
+                        index("d", ProviderAdvisor.LUCENE), 500_000L);
+        Assert.assertEquals(40_000, PopulationTracker.estimate(history, sizes));
+        Assert.assertEquals(-1, PopulationTracker.estimate(List.of(), sizes));
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2002 Brinqa, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neo4j.tool.index;
+
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Test;
+import org.neo4j.tool.dto.IndexData;
+import org.neo4j.tool.dto.PropertyStats;
+
+public class ProviderAdvisorTest {
+
+    static final IndexData INDEX =
+            IndexData.builder()
+                    .name("idx")
+                    .type("BTREE")
+                    .entityType("NODE")
+                    .labelsOrTypes(List.of("Asset"))
+                    .properties(List.of("name"))
+                    .indexProvider(ProviderAdvisor.BTREE)
+                    .build();
+
+    static PropertyStats stats(double avg, long max, long longValues) {
+        return PropertyStats.builder()
+                .property("name")
+                .sampled(100)
+                .distinct(50)
+                .strings(100)
+                .averageLength(avg)
+                .maxLength(max)
+                .maxBytes(max)
+                .longValues(longValues)
+                .build();
+    }
+
+    final ProviderAdvisor advisor = ProviderAdvisor.builder().build();
+
+    @Test
+    public void testShortValues() {
+        final var ret = advisor.advise(INDEX, List.of(stats(20, 100, 0)));
+        Assert.assertEquals(ProviderAdvisor.BTREE, ret.getIndexProvider());
+        Assert.assertTrue(ret.getProviderReason().contains("distinct 50%"));
+    }
+
+    @Test
+    public void testLongValues() {
+        Assert.assertEquals(
+                ProviderAdvisor.LUCENE,
+                advisor.advise(INDEX, List.of(stats(20, 5000, 1))).getIndexProvider());
+        Assert.assertEquals(
+                ProviderAdvisor.LUCENE,
+                advisor.advise(INDEX, List.of(stats(20, 1000, 20))).getIndexProvider());
+        Assert.assertEquals(
+                ProviderAdvisor.LUCENE,
+                advisor.advise(INDEX, List.of(stats(300, 1000, 5))).getIndexProvider());
+    }
+
+    @Test
+    public void testMultiByteValues() {
+        // 1,500 characters fit the key, unless they take 4 bytes each
+        final var ascii = stats(20, 1_500, 0);
+        final var wide = ascii.toBuilder().maxBytes(6_000).build();
+        Assert.assertEquals(
+                ProviderAdvisor.BTREE, advisor.advise(INDEX, List.of(ascii)).getIndexProvider());
+        final var ret = advisor.advise(INDEX, List.of(wide));
+        Assert.assertEquals(ProviderAdvisor.LUCENE, ret.getIndexProvider());
+        Assert.assertTrue(ret.getProviderReason().contains("(6000 bytes)"));
+    }
+
+    @Test
+    public void testLowCardinality() {
+        final var repeated = stats(100, 200, 0).toBuilder().distinct(0).build();
+        Assert.assertEquals(
+                ProviderAdvisor.LUCENE,
+                advisor.advise(INDEX, List.of(repeated)).getIndexProvider());
+        // short values stay on the B-tree however often they repeat
+        final var flags = stats(10, 20, 0).toBuilder().distinct(0).build();
+        Assert.assertEquals(
+                ProviderAdvisor.BTREE, advisor.advise(INDEX, List.of(flags)).getIndexProvider());
+    }
+
+    @Test
+    public void testConstraintUnchanged() {
+        final var constraint = INDEX.toBuilder().uniqueness(true).build();
+        final var ret = advisor.advise(constraint, List.of(stats(300, 5000, 50)));
+        Assert.assertEquals(ProviderAdvisor.BTREE, ret.getIndexProvider());
+        Assert.assertNotNull(ret.getProviderReason());
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2002 Brinqa, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neo4j.tool.index;
+
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Test;
+import org.neo4j.tool.dto.IndexData;
+
+public class SchemaPlannerTest {
+
+    static IndexData index(String name, String label, String property, String provider) {
+        return IndexData.builder()
+                .name(name)
+                .type("BTREE")
+                .entityType("NODE")
+                .labelsOrTypes(List.of(label))
+                .properties(List.of(property))
+                .indexProvider(provider)
+                .build();
+    }
+
+    @Test
+    public void testOnlyChanges() {
+        final var db =
+                List.of(
+                        index("same", "A", "x", ProviderAdvisor.BTREE),
+                        index("provider", "A", "y", ProviderAdvisor.BTREE),
+                        index("extra", "B", "x", ProviderAdvisor.BTREE));
+        final var file =
+                List.of(
+                        index("same", "A", "x", ProviderAdvisor.BTREE),
+                        index("provider", "A", "y", ProviderAdvisor.LUCENE),
+                        index("missing", "C", "x", ProviderAdvisor.BTREE));
+        final var plan = SchemaPlanner.plan(file, db, false);
+        Assert.assertEquals(List.of(db.get(1)), plan.drops());
+        Assert.assertEquals(List.of(file.get(1), file.get(2)), plan.creates());
+        Assert.assertEquals(List.of(db.get(0)), plan.getUnchanged());
+        Assert.assertEquals(List.of(db.get(2)), plan.getExtra());
+        Assert.assertEquals(SchemaPlanner.Kind.DROP, plan.getActions().get(0).getKind());
+    }
+
+    @Test
+    public void testSameSchemaOtherName() {
+        final var db = List.of(index("old", "A", "x", ProviderAdvisor.BTREE));
+        final var file = List.of(index("new", "A", "x", ProviderAdvisor.BTREE));
+        final var plan = SchemaPlanner.plan(file, db, false);
+        Assert.assertTrue(plan.isEmpty());
+        Assert.assertEquals(db, plan.getUnchanged());
+    }
+
+    @Test
+    public void testConstraintProviderIgnored() {
+        final var constraint = index("c", "A", "x", ProviderAdvisor.BTREE);
+        final var db = List.of(constraint.toBuilder().uniqueness(true).build());
+        final var file =
+                List.of(constraint.toBuilder().uniqueness(true).indexProvider("lucene").build());
+        Assert.assertTrue(SchemaPlanner.plan(file, db, false).isEmpty());
+        Assert.assertEquals(1, SchemaPlanner.plan(file, db, true).drops().size());
+    }
+}
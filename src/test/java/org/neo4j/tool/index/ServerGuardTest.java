@@ -0,0 +1,52 @@
+/*
+ * Copyright 2002 Brinqa, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neo4j.tool.index;
+
+import java.util.Map;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ServerGuardTest {
+
+    @Test
+    public void testNumber() {
+        final Map<String, Object> memory =
+                Map.of(
+                        "HeapMemoryUsage",
+                        Map.of("value", Map.of("properties", Map.of("used", 10L, "max", 40L))));
+        Assert.assertEquals(
+                10L, ServerGuard.number(memory, "HeapMemoryUsage", "value", "properties", "used"));
+        Assert.assertEquals(0L, ServerGuard.number(memory, "HeapMemoryUsage", "missing"));
+        Assert.assertEquals(0L, ServerGuard.number(Map.of("StartTime", "x"), "StartTime"));
+    }
+
+    @Test
+    public void testGcRatio() {
+        final var guard = new ServerGuard(null, 0.85, 0.2);
+        Assert.assertEquals(0d, guard.gcRatio(1_000L, 10_000L), 0.001);
+        Assert.assertEquals(0.5d, guard.gcRatio(1_500L, 11_000L), 0.001);
+        // collection time starts again after a restart
+        Assert.assertEquals(0d, guard.gcRatio(10L, 12_000L), 0.001);
+    }
+
+    @Test
+    public void testPressure() {
+        final var guard = new ServerGuard(null, 0.85, 0.2);
+        Assert.assertFalse(guard.pressure(0.5, 0.1));
+        Assert.assertTrue(guard.pressure(0.9, 0.1));
+        Assert.assertTrue(guard.pressure(0.5, 0.3));
+    }
+}
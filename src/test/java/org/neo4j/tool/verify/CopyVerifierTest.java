@@ -0,0 +1,56 @@
+/*
+ * Copyright 2002 Brinqa, Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.neo4j.tool.verify;
+
+import java.util.Map;
+import java.util.Set;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CopyVerifierTest {
+
+    @Test
+    public void testFilteredCounts() {
+        final var report = new VerifyReport();
+        CopyVerifier.compareCounts(
+                "Label", Map.of("A", 10L, "B", 5L), Map.of("A", 7L), Set.of(), report);
+        Assert.assertTrue(report.isValid());
+    }
+
+    @Test
+    public void testHigherTargetCount() {
+        final var report = new VerifyReport();
+        CopyVerifier.compareCounts("Type", Map.of("R", 10L), Map.of("R", 11L), Set.of(), report);
+        Assert.assertFalse(report.isValid());
+        Assert.assertEquals(1L, report.countMismatches.get());
+    }
+
+    @Test
+    public void testDroppedLabel() {
+        final var report = new VerifyReport();
+        CopyVerifier.compareCounts("Label", Map.of("A", 10L), Map.of("A", 3L), Set.of("A"), report);
+        Assert.assertFalse(report.isValid());
+
+        final var dropped = new VerifyReport();
+        CopyVerifier.compareCounts("Label", Map.of("A", 10L), Map.of(), Set.of("A"), dropped);
+        Assert.assertTrue(dropped.isValid());
+    }
+
+    @Test
+    public void testEscape() {
+        Assert.assertEquals("a``b", CopyVerifier.escape("a`b"));
+    }
+}